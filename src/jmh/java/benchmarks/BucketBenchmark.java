@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saves a full bucket of a grid index on gpa and first_name and loads it back
+ * through the index. Like PageBenchmark the bucket is written inside a
+ * transaction which never commits, so only serialization is measured
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BucketBenchmark {
+
+	@Param({ "20", "100", "500" })
+	public int bucketSize;
+
+	private String dir, path;
+	private Object txn, index, bucket;
+	private MethodHandle save, loadBucket;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(200, bucketSize);
+		txn = Engine.beginTransaction(dir);
+
+		index = Engine.newInstance("GridIndex", new String[] { "gpa", "first_name" }, Datasets.studentsTypes(),
+				Datasets.studentsMin(), Datasets.studentsMax(), bucketSize, 0, dir + "/data/");
+		bucket = Engine.newInstance("Bucket", dir + "/data/", 0, 0, bucketSize);
+		for (int i = 0; i < bucketSize; ++i) {
+			// references spread over pages the way a table of 200 rows per page has them
+			Engine.call(bucket, "addRef", "page_" + (i * 7 / 200) + ".class", i * 7 % 200, null);
+		}
+		Engine.call(bucket, "save");
+		path = (String) Engine.call(bucket, "getPath");
+
+		save = Engine.handle("Bucket", "save", 0);
+		loadBucket = Engine.handle("GridIndex", "loadBucket", 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Engine.call(txn, "end");
+		Datasets.deleteDatabase(dir);
+	}
+
+	@Benchmark
+	public void save() throws Throwable {
+		save.invoke(bucket);
+	}
+
+	@Benchmark
+	public Object load() throws Throwable {
+		return loadBucket.invoke(index, path);
+	}
+}
@@ -0,0 +1,198 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Creates the databases the benchmarks run on, filled from the students and
+ * transcripts datasets bundled with the project. Every database lives in its own
+ * temporary directory with a config written here, so runs don't depend on
+ * DBApp.config or on data left by earlier runs
+ */
+final class Datasets {
+
+	private static final String RESOURCES = "src/main/resources/";
+
+	private Datasets() {
+	}
+
+	/**
+	 * @param rowsPerPage the maximum number of rows in a page
+	 * @param bucketSize  the maximum number of keys in an index bucket
+	 * @return the directory of a new empty database
+	 */
+	static String newDatabase(int rowsPerPage, int bucketSize) throws IOException {
+		File dir = Files.createTempDirectory("dbapp-benchmark").toFile();
+		new File(dir, "data").mkdirs();
+		new File(dir, "metadata.csv").createNewFile();
+		FileWriter fw = new FileWriter(new File(dir, "DBApp.config"));
+		// commits aren't forced to disk, the numbers are those of the engine
+		fw.write("MaximumRowsCountinPage = " + rowsPerPage + "\n");
+		fw.write("MaximumKeysCountinIndexBucket = " + bucketSize + "\n");
+		fw.write("BufferPoolSize = 1024\n");
+		fw.write("WALFlushPolicy = write\n");
+		fw.write("CheckpointInterval = 30000\n");
+		fw.close();
+		return dir.getPath();
+	}
+
+	static void deleteDatabase(String dir) throws Exception {
+		Engine.checkpoint();
+		delete(new File(dir));
+	}
+
+	static void createStudentsTable(Object dbApp, String tableName) throws Exception {
+		Engine.call(dbApp, "createTable", tableName, "id", studentsTypes(), studentsMin(), studentsMax());
+	}
+
+	static Hashtable<String, String> studentsTypes() {
+		Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+		htblColNameType.put("id", "java.lang.String");
+		htblColNameType.put("first_name", "java.lang.String");
+		htblColNameType.put("last_name", "java.lang.String");
+		htblColNameType.put("dob", "java.util.Date");
+		htblColNameType.put("gpa", "java.lang.Double");
+		return htblColNameType;
+	}
+
+	static Hashtable<String, String> studentsMin() {
+		Hashtable<String, String> minValues = new Hashtable<String, String>();
+		minValues.put("id", "43-0000");
+		minValues.put("first_name", "AAAAAA");
+		minValues.put("last_name", "AAAAAA");
+		minValues.put("dob", "1990-01-01");
+		minValues.put("gpa", "0.7");
+		return minValues;
+	}
+
+	static Hashtable<String, String> studentsMax() {
+		Hashtable<String, String> maxValues = new Hashtable<String, String>();
+		maxValues.put("id", "99-9999");
+		maxValues.put("first_name", "zzzzzz");
+		maxValues.put("last_name", "zzzzzz");
+		maxValues.put("dob", "2000-12-31");
+		maxValues.put("gpa", "5.0");
+		return maxValues;
+	}
+
+	/**
+	 * @return the row as a tuple of a table clustered on the column
+	 */
+	static Object tuple(Hashtable<String, Object> row, String clusteringKey) throws Exception {
+		Object tuple = Engine.newInstance("Tuple", clusteringKey);
+		for (String colName : row.keySet()) {
+			Engine.call(tuple, "setValue", colName, row.get(colName));
+		}
+		return tuple;
+	}
+
+	static void createTranscriptsTable(Object dbApp, String tableName) throws Exception {
+		Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+		htblColNameType.put("gpa", "java.lang.Double");
+		htblColNameType.put("student_id", "java.lang.String");
+		htblColNameType.put("course_name", "java.lang.String");
+		htblColNameType.put("date_passed", "java.util.Date");
+
+		Hashtable<String, String> minValues = new Hashtable<String, String>();
+		minValues.put("gpa", "0.7");
+		minValues.put("student_id", "43-0000");
+		minValues.put("course_name", "AAAAAA");
+		minValues.put("date_passed", "1990-01-01");
+
+		Hashtable<String, String> maxValues = new Hashtable<String, String>();
+		maxValues.put("gpa", "5.0");
+		maxValues.put("student_id", "99-9999");
+		maxValues.put("course_name", "zzzzzz");
+		maxValues.put("date_passed", "2020-12-31");
+
+		Engine.call(dbApp, "createTable", tableName, "gpa", htblColNameType, minValues, maxValues);
+	}
+
+	/**
+	 * @return the rows of students_table.csv in file order
+	 */
+	static Vector<Hashtable<String, Object>> students() throws IOException {
+		Vector<Hashtable<String, Object>> rows = new Vector<Hashtable<String, Object>>();
+		for (String fields[] : read("students_table.csv")) {
+			Hashtable<String, Object> row = new Hashtable<String, Object>();
+			row.put("id", fields[0]);
+			row.put("first_name", fields[1]);
+			row.put("last_name", fields[2]);
+			row.put("dob", parseDate(fields[3]));
+			row.put("gpa", Double.parseDouble(fields[4].trim()));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the rows of transcripts_table.csv in file order, without the rows
+	 *         repeating the gpa of an earlier one as gpa is the clustering key
+	 */
+	static Vector<Hashtable<String, Object>> transcripts() throws IOException {
+		Vector<Hashtable<String, Object>> rows = new Vector<Hashtable<String, Object>>();
+		HashSet<Double> keys = new HashSet<Double>();
+		for (String fields[] : read("transcripts_table.csv")) {
+			double gpa = Double.parseDouble(fields[0].trim());
+			if (!keys.add(gpa)) {
+				continue;
+			}
+			Hashtable<String, Object> row = new Hashtable<String, Object>();
+			row.put("gpa", gpa);
+			row.put("student_id", fields[1].trim());
+			row.put("course_name", fields[2].trim());
+			row.put("date_passed", parseDate(fields[3]));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * inserts the rows in a single transaction
+	 */
+	static void load(Object dbApp, String tableName, Vector<Hashtable<String, Object>> rows) throws Exception {
+		Engine.call(dbApp, "beginTransaction");
+		for (Hashtable<String, Object> row : rows) {
+			Engine.insert(dbApp, tableName, new Hashtable<String, Object>(row));
+		}
+		Engine.call(dbApp, "commit");
+	}
+
+	@SuppressWarnings("deprecation")
+	private static Date parseDate(String date) {
+		date = date.trim();
+		int year = Integer.parseInt(date.substring(0, 4));
+		int month = Integer.parseInt(date.substring(5, 7));
+		int day = Integer.parseInt(date.substring(8));
+		return new Date(year - 1900, month - 1, day);
+	}
+
+	private static Vector<String[]> read(String fileName) throws IOException {
+		Vector<String[]> res = new Vector<String[]>();
+		BufferedReader br = new BufferedReader(new FileReader(RESOURCES + fileName));
+		String record;
+		while ((record = br.readLine()) != null) {
+			res.add(record.split(","));
+		}
+		br.close();
+		return res;
+	}
+
+	private static void delete(File file) throws IOException {
+		File children[] = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		Files.deleteIfExists(file.toPath());
+	}
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to delete a fixed set of students one at a time, found by clustering
+ * key (binary search), by first_name through a grid index or by last_name
+ * which no index covers so every page is scanned
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DeleteBenchmark {
+
+	@Param({ "key", "indexed", "scan" })
+	public String by;
+
+	@Param({ "100" })
+	public int deletes;
+
+	private String dir, table;
+	private Object dbApp;
+	private Vector<Hashtable<String, Object>> students, criteria;
+	private int tables;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(200, 20);
+		dbApp = Engine.dbApp(dir);
+		students = Datasets.students();
+
+		String column = by.equals("key") ? "id" : by.equals("indexed") ? "first_name" : "last_name";
+		Vector<Hashtable<String, Object>> victims = new Vector<Hashtable<String, Object>>(students);
+		Collections.shuffle(victims, new Random(42));
+		criteria = new Vector<Hashtable<String, Object>>();
+		for (Hashtable<String, Object> row : victims.subList(0, deletes)) {
+			Hashtable<String, Object> c = new Hashtable<String, Object>();
+			c.put(column, row.get(column));
+			criteria.add(c);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void newTable() throws Exception {
+		table = "students_" + tables++;
+		Datasets.createStudentsTable(dbApp, table);
+		Datasets.load(dbApp, table, students);
+		Engine.call(dbApp, "createIndex", table, new String[] { "first_name" });
+	}
+
+	@Benchmark
+	public void deleteFromTable() throws Exception {
+		for (Hashtable<String, Object> c : criteria) {
+			Engine.delete(dbApp, table, new Hashtable<String, Object>(c));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Datasets.deleteDatabase(dir);
+	}
+}
@@ -0,0 +1,157 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Hashtable;
+import java.util.Iterator;
+
+/**
+ * Calls into the engine. Its classes are in the default package, which JMH
+ * doesn't allow for benchmarks and which can't be imported from a package, so
+ * they are reached by reflection. Methods are looked up once by name and
+ * number of parameters, the cost of invoking them is negligible next to the
+ * operations measured
+ */
+final class Engine {
+
+	private static Hashtable<String, Method> methods = new Hashtable<String, Method>();
+
+	private Engine() {
+	}
+
+	static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static Object newInstance(String className, Object... args) throws Exception {
+		for (Constructor<?> c : type(className).getDeclaredConstructors()) {
+			if (c.getParameterCount() == args.length) {
+				c.setAccessible(true);
+				try {
+					return c.newInstance(args);
+				} catch (InvocationTargetException e) {
+					throw unwrap(e);
+				}
+			}
+		}
+		throw new NoSuchMethodException(className + " with " + args.length + " parameters");
+	}
+
+	/**
+	 * @param target the object, or the class for static methods
+	 * @param name   the name of the method, private ones included
+	 * @param args   the arguments
+	 * @return what the method returns
+	 */
+	static Object call(Object target, String name, Object... args) throws Exception {
+		Class<?> cls = target instanceof Class ? (Class<?>) target : target.getClass();
+		String key = cls.getName() + "." + name + "/" + args.length;
+		Method method = methods.get(key);
+		if (method == null) {
+			for (Method m : cls.getDeclaredMethods()) {
+				if (m.getName().equals(name) && m.getParameterCount() == args.length) {
+					m.setAccessible(true);
+					method = m;
+					break;
+				}
+			}
+			if (method == null) {
+				throw new NoSuchMethodException(key);
+			}
+			methods.put(key, method);
+		}
+		try {
+			return method.invoke(target instanceof Class ? null : target, args);
+		} catch (InvocationTargetException e) {
+			throw unwrap(e);
+		}
+	}
+
+	/**
+	 * @return a handle on the method, invoking it allocates nothing so it suits
+	 *         benchmarks measuring allocations of calls taking nanoseconds
+	 */
+	static MethodHandle handle(String className, String name, int params) throws Exception {
+		for (Method m : type(className).getDeclaredMethods()) {
+			if (m.getName().equals(name) && m.getParameterCount() == params) {
+				m.setAccessible(true);
+				return MethodHandles.lookup().unreflect(m);
+			}
+		}
+		throw new NoSuchMethodException(className + "." + name + "/" + params);
+	}
+
+	/**
+	 * begins a transaction on the current thread logging to a log in the directory,
+	 * its writes stay in memory until it ends
+	 */
+	static Object beginTransaction(String dir) throws Exception {
+		Object log = call(type("WriteAheadLog"), "open", dir + "/wal.log", false);
+		return call(type("Transaction"), "begin", log);
+	}
+
+	static Object dbApp(String dir) throws Exception {
+		Object dbApp = newInstance("DBApp", dir);
+		call(dbApp, "init");
+		return dbApp;
+	}
+
+	/**
+	 * @param table the table selected from
+	 * @param terms column, operator and value of each term
+	 * @return the terms as an SQLTerm array
+	 */
+	static Object terms(String table, Object[]... terms) throws Exception {
+		Class<?> cls = type("SQLTerm");
+		Object res = Array.newInstance(cls, terms.length);
+		for (int i = 0; i < terms.length; ++i) {
+			Object term = cls.getConstructor().newInstance();
+			cls.getField("_strTableName").set(term, table);
+			cls.getField("_strColumnName").set(term, terms[i][0]);
+			cls.getField("_strOperator").set(term, terms[i][1]);
+			cls.getField("_objValue").set(term, terms[i][2]);
+			Array.set(res, i, term);
+		}
+		return res;
+	}
+
+	static void insert(Object dbApp, String table, Hashtable<String, Object> row) throws Exception {
+		call(dbApp, "insertIntoTable", table, row);
+	}
+
+	static void update(Object dbApp, String table, String key, Hashtable<String, Object> row) throws Exception {
+		call(dbApp, "updateTable", table, key, row);
+	}
+
+	static void delete(Object dbApp, String table, Hashtable<String, Object> row) throws Exception {
+		call(dbApp, "deleteFromTable", table, row);
+	}
+
+	static Iterator<?> select(Object dbApp, Object terms, String[] ops) throws Exception {
+		return (Iterator<?>) call(dbApp, "selectFromTable", terms, ops);
+	}
+
+	/**
+	 * writes every dirty page to disk, done before removing the directory of a
+	 * database so nothing is written back to it later
+	 */
+	static void checkpoint() throws Exception {
+		call(type("BufferPool"), "checkpoint");
+	}
+
+	private static Exception unwrap(InvocationTargetException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof Exception) {
+			return (Exception) cause;
+		}
+		throw new IllegalStateException(cause);
+	}
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Maps rows of the students table to the cell of a grid index holding them, on
+ * indices over one to three columns of the String, Double and Date types
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GridIndexBenchmark {
+
+	private static final int ROWS = 256;
+
+	private static final String COLUMNS[] = { "gpa", "first_name", "dob" };
+
+	@Param({ "1", "2", "3" })
+	public int columns; // the first ones of COLUMNS
+
+	private Object index;
+	private Hashtable<?, ?> rows[];
+	private int next;
+	private MethodHandle get1DIdx;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		// the index is never saved so it needs no database
+		index = Engine.newInstance("GridIndex", Arrays.copyOf(COLUMNS, columns), Datasets.studentsTypes(), Datasets.studentsMin(),
+				Datasets.studentsMax(), 20, 0, "");
+
+		Vector<Hashtable<String, Object>> students = Datasets.students();
+		Random random = new Random(42);
+		rows = new Hashtable[ROWS];
+		for (int i = 0; i < ROWS; ++i) {
+			rows[i] = students.get(random.nextInt(students.size()));
+		}
+
+		get1DIdx = Engine.handle("GridIndex", "get1DIdx", 1);
+	}
+
+	@Benchmark
+	public int get1DIdx() throws Throwable {
+		return (int) get1DIdx.invoke(index, rows[next++ & (ROWS - 1)]);
+	}
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to fill an empty table with a dataset inserting the rows in clustering
+ * key order, in reverse order or shuffled. Reverse and random order keep
+ * inserting into full pages, shifting rows into the following pages
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InsertBenchmark {
+
+	@Param({ "students", "transcripts" })
+	public String dataset;
+
+	@Param({ "sequential", "random", "reverse" })
+	public String order;
+
+	@Param({ "1000" })
+	public int rows;
+
+	private String dir, table;
+	private Object dbApp;
+	private Vector<Hashtable<String, Object>> data;
+	private int tables;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(200, 20);
+		dbApp = Engine.dbApp(dir);
+
+		boolean students = dataset.equals("students");
+		Vector<Hashtable<String, Object>> all = students ? Datasets.students() : Datasets.transcripts();
+		String key = students ? "id" : "gpa";
+		data = new Vector<Hashtable<String, Object>>(all.subList(0, rows));
+		data.sort(Comparator.comparing(row -> (Comparable) row.get(key)));
+		if (order.equals("reverse")) {
+			Collections.reverse(data);
+		} else if (order.equals("random")) {
+			Collections.shuffle(data, new Random(42));
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void newTable() throws Exception {
+		table = dataset + "_" + tables++;
+		if (dataset.equals("students")) {
+			Datasets.createStudentsTable(dbApp, table);
+		} else {
+			Datasets.createTranscriptsTable(dbApp, table);
+		}
+	}
+
+	@Benchmark
+	public void insertIntoTable() throws Exception {
+		for (Hashtable<String, Object> row : data) {
+			Engine.insert(dbApp, table, new Hashtable<String, Object>(row));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Datasets.deleteDatabase(dir);
+	}
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saves and loads a full page of students and binary searches it for insert
+ * positions. The page is written inside a transaction which never commits, so
+ * save measures serializing the page and load measures deserializing it, without
+ * the disk or the log
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageBenchmark {
+
+	private static final int KEYS = 256;
+
+	@Param({ "50", "200", "1000" })
+	public int rowsPerPage;
+
+	private String dir, path;
+	private Object txn, page;
+	private String keys[];
+	private int next;
+	private MethodHandle save, read, getInsertIdx;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(rowsPerPage, 20);
+		path = dir + "/data/page.class";
+		txn = Engine.beginTransaction(dir);
+
+		Vector<Hashtable<String, Object>> students = Datasets.students();
+		students.sort((a, b) -> ((String) a.get("id")).compareTo((String) b.get("id")));
+		page = Engine.newInstance("Page", rowsPerPage, path, "id", "java.lang.String");
+		for (int i = 0; i < rowsPerPage; ++i) {
+			Engine.call(page, "insert", Datasets.tuple(students.get(i), "id"), i);
+		}
+
+		// keys right after ones in the page, which are never in it and never past its
+		// last key
+		Random random = new Random(42);
+		keys = new String[KEYS];
+		for (int i = 0; i < KEYS; ++i) {
+			keys[i] = students.get(random.nextInt(rowsPerPage - 1)).get("id") + "a";
+		}
+
+		save = Engine.handle("Page", "save", 0);
+		read = Engine.handle("BufferPool", "read", 1);
+		getInsertIdx = Engine.handle("Page", "getInsertIdx", 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Engine.call(txn, "end");
+		Datasets.deleteDatabase(dir);
+	}
+
+	@Benchmark
+	public void save() throws Throwable {
+		save.invoke(page);
+	}
+
+	@Benchmark
+	public Object load() throws Throwable {
+		return read.invoke(path);
+	}
+
+	@Benchmark
+	public int getInsertIdx() throws Throwable {
+		return (int) getInsertIdx.invoke(page, (Object) keys[next++ & (KEYS - 1)]);
+	}
+}
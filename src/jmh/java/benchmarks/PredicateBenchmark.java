@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates where clauses on tuples of the students table the way a scan of a
+ * table does, for a single term, three terms joined by and, and three terms
+ * joined by or and xor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredicateBenchmark {
+
+	private static final int TUPLES = 256;
+	private static final String AND[] = { "and", "and" }, OR_XOR[] = { "or", "xor" };
+	private static final String NONE[] = new String[0];
+
+	private String dir;
+	private Object txn, table, singleTerm, and, orXor;
+	private Object tuples[];
+	private int next;
+	private MethodHandle checkTuple;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(200, 20);
+		txn = Engine.beginTransaction(dir);
+		table = Engine.newInstance("Table", "students", "id", Datasets.studentsTypes(), Datasets.studentsMin(),
+				Datasets.studentsMax(), dir + "/", 200, 20);
+
+		Vector<Hashtable<String, Object>> students = Datasets.students();
+		Random random = new Random(42);
+		tuples = new Object[TUPLES];
+		for (int i = 0; i < TUPLES; ++i) {
+			tuples[i] = Datasets.tuple(students.get(random.nextInt(students.size())), "id");
+		}
+
+		singleTerm = Engine.terms("students", new Object[] { "gpa", ">=", 2.5 });
+		and = Engine.terms("students", new Object[] { "gpa", ">=", 2.5 }, new Object[] { "first_name", "<", "m" },
+				new Object[] { "last_name", "!=", "smith" });
+		orXor = Engine.terms("students", new Object[] { "gpa", ">=", 2.5 }, new Object[] { "first_name", "<", "m" },
+				new Object[] { "last_name", "!=", "smith" });
+
+		checkTuple = Engine.handle("Table", "checkTuple", 3);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Engine.call(txn, "end");
+		Datasets.deleteDatabase(dir);
+	}
+
+	@Benchmark
+	public boolean singleTerm() throws Throwable {
+		return (boolean) checkTuple.invoke(table, tuples[next++ & (TUPLES - 1)], singleTerm, NONE);
+	}
+
+	@Benchmark
+	public boolean and() throws Throwable {
+		return (boolean) checkTuple.invoke(table, tuples[next++ & (TUPLES - 1)], and, AND);
+	}
+
+	@Benchmark
+	public boolean orXor() throws Throwable {
+		return (boolean) checkTuple.invoke(table, tuples[next++ & (TUPLES - 1)], orXor, OR_XOR);
+	}
+}
@@ -0,0 +1,106 @@
+package benchmarks;
+
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Selects on the students table with and without a grid index on gpa and
+ * first_name: a point lookup on the clustering key, an equality on first_name,
+ * a gpa range and a two term query. The terms come from a fixed sequence so
+ * every run asks the same queries
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectBenchmark {
+
+	private static final int QUERIES = 256;
+
+	@Param({ "false", "true" })
+	public boolean indexed;
+
+	private String dir;
+	private Object dbApp;
+	private Object pointKey[], point[], range[], multiTerm[];
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(200, 20);
+		dbApp = Engine.dbApp(dir);
+		Vector<Hashtable<String, Object>> students = Datasets.students();
+		Datasets.createStudentsTable(dbApp, "students");
+		Datasets.load(dbApp, "students", students);
+		if (indexed) {
+			Engine.call(dbApp, "createIndex", "students", new String[] { "gpa", "first_name" });
+		}
+
+		Random random = new Random(42);
+		pointKey = new Object[QUERIES];
+		point = new Object[QUERIES];
+		range = new Object[QUERIES];
+		multiTerm = new Object[QUERIES];
+		for (int i = 0; i < QUERIES; ++i) {
+			Hashtable<String, Object> row = students.get(random.nextInt(students.size()));
+			double gpa = 0.7 + random.nextInt(400) / 100.0;
+			pointKey[i] = Engine.terms("students", new Object[] { "id", "=", row.get("id") });
+			point[i] = Engine.terms("students", new Object[] { "first_name", "=", row.get("first_name") });
+			range[i] = Engine.terms("students", new Object[] { "gpa", ">=", gpa },
+					new Object[] { "gpa", "<", gpa + 0.3 });
+			multiTerm[i] = Engine.terms("students", new Object[] { "gpa", "<", gpa },
+					new Object[] { "first_name", ">=", row.get("first_name") });
+		}
+	}
+
+	@Benchmark
+	public void pointOnClusteringKey(Blackhole bh) throws Exception {
+		consume(bh, Engine.select(dbApp, pointKey[next++ & (QUERIES - 1)], new String[0]));
+	}
+
+	@Benchmark
+	public void point(Blackhole bh) throws Exception {
+		consume(bh, Engine.select(dbApp, point[next++ & (QUERIES - 1)], new String[0]));
+	}
+
+	@Benchmark
+	public void range(Blackhole bh) throws Exception {
+		consume(bh, Engine.select(dbApp, range[next++ & (QUERIES - 1)], new String[] { "AND" }));
+	}
+
+	@Benchmark
+	public void multiTerm(Blackhole bh) throws Exception {
+		consume(bh, Engine.select(dbApp, multiTerm[next++ & (QUERIES - 1)], new String[] { "AND" }));
+	}
+
+	private static void consume(Blackhole bh, Iterator<?> it) {
+		while (it.hasNext()) {
+			bh.consume(it.next());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Datasets.deleteDatabase(dir);
+	}
+}
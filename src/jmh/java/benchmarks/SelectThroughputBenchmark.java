@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How select throughput scales with the number of selects in flight through
+ * AsyncDBApp. Each invocation issues a batch of point selects on the clustering
+ * key of the students table, never letting more than inFlight of them run at
+ * once, and waits for all of them, so the score is in selects per second
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectThroughputBenchmark {
+
+	private static final int QUERIES = 256;
+	private static final int BATCH = 5000;
+
+	@Param({ "1", "10", "100", "1000", "5000" })
+	public int inFlight;
+
+	private String dir;
+	private Object asyncApp;
+	private Object terms[];
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(200, 20);
+		Object dbApp = Engine.dbApp(dir);
+		Vector<Hashtable<String, Object>> students = Datasets.students();
+		Datasets.createStudentsTable(dbApp, "students");
+		Datasets.load(dbApp, "students", students);
+		asyncApp = Engine.newInstance("AsyncDBApp", dbApp);
+
+		Random random = new Random(42);
+		terms = new Object[QUERIES];
+		for (int i = 0; i < QUERIES; ++i) {
+			Object id = students.get(random.nextInt(students.size())).get("id");
+			terms[i] = Engine.terms("students", new Object[] { "id", "=", id });
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int selectAsync() throws Exception {
+		Semaphore permits = new Semaphore(inFlight);
+		AtomicInteger rows = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+		for (int i = 0; i < BATCH; ++i) {
+			permits.acquire();
+			CompletableFuture<?> res = (CompletableFuture<?>) Engine.call(asyncApp, "selectAsync",
+					terms[i & (QUERIES - 1)], new String[0]);
+			res.whenComplete((it, e) -> {
+				if (e != null) {
+					errors.incrementAndGet();
+				} else {
+					for (Iterator<?> rowIt = (Iterator<?>) it; rowIt.hasNext(); rowIt.next()) {
+						rows.incrementAndGet();
+					}
+				}
+				permits.release();
+			});
+		}
+		permits.acquire(inFlight);
+		if (errors.get() > 0) {
+			throw new IllegalStateException(errors.get() + " selects failed");
+		}
+		return rows.get();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Engine.call(asyncApp, "close");
+		Datasets.deleteDatabase(dir);
+	}
+}
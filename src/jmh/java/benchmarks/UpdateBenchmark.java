@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Updates the gpa of a student picked from a fixed sequence, with and without a
+ * grid index on gpa to be kept up to date
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean indexed;
+
+	private String dir;
+	private Object dbApp;
+	private String keys[];
+	private Hashtable<String, Object> values[];
+	private int next;
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		dir = Datasets.newDatabase(200, 20);
+		dbApp = Engine.dbApp(dir);
+		Vector<Hashtable<String, Object>> students = Datasets.students();
+		Datasets.createStudentsTable(dbApp, "students");
+		Datasets.load(dbApp, "students", students);
+		if (indexed) {
+			Engine.call(dbApp, "createIndex", "students", new String[] { "gpa" });
+		}
+
+		Random random = new Random(42);
+		keys = new String[1024];
+		values = new Hashtable[keys.length];
+		for (int i = 0; i < keys.length; ++i) {
+			keys[i] = (String) students.get(random.nextInt(students.size())).get("id");
+			values[i] = new Hashtable<String, Object>();
+			values[i].put("gpa", 0.7 + random.nextInt(430) / 100.0);
+		}
+	}
+
+	@Benchmark
+	public void updateTable() throws Exception {
+		int i = next++ & (keys.length - 1);
+		Engine.update(dbApp, "students", keys[i], new Hashtable<String, Object>(values[i]));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		Datasets.deleteDatabase(dir);
+	}
+}
@@ -0,0 +1,194 @@
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the operations of a DBApp on an executor and hands back futures of their
+ * results, so callers can keep many operations going without blocking a thread
+ * on each. Operations on the same table take effect in the order they were
+ * submitted: a write waits for everything submitted before it on the table, a
+ * read only waits for the writes submitted before it so reads run concurrently.
+ * Operations on different tables run concurrently.
+ *
+ * Every operation runs in its own transaction, a transaction begun by the
+ * calling thread doesn't cover them
+ */
+@SuppressWarnings("rawtypes")
+public class AsyncDBApp {
+
+	private static class TableQueue {
+		private CompletableFuture<?> lastWrite = CompletableFuture.completedFuture(null);
+		private Vector<CompletableFuture<?>> reads = new Vector<CompletableFuture<?>>(); // submitted after lastWrite
+	}
+
+	private DBApp dbApp;
+	private ExecutorService executor;
+	private Hashtable<String, TableQueue> queues;
+
+	/**
+	 * runs the operations on the number of threads set by AsyncThreads in the
+	 * config of the DBApp
+	 *
+	 * @param dbApp the initialized DBApp to run the operations on
+	 */
+	public AsyncDBApp(DBApp dbApp) {
+		this(dbApp, dbApp.getAsyncThreads());
+	}
+
+	/**
+	 * @param dbApp      the initialized DBApp to run the operations on
+	 * @param intThreads the number of platform threads running the operations, 0
+	 *                   to start a virtual thread per operation when the JVM has
+	 *                   them
+	 */
+	public AsyncDBApp(DBApp dbApp, int intThreads) {
+		this(dbApp, newExecutor(intThreads));
+	}
+
+	/**
+	 * @param dbApp    the initialized DBApp to run the operations on
+	 * @param executor the executor running the operations
+	 */
+	public AsyncDBApp(DBApp dbApp, ExecutorService executor) {
+		this.dbApp = dbApp;
+		this.executor = executor;
+		this.queues = new Hashtable<String, TableQueue>();
+	}
+
+	public CompletableFuture<Void> createTableAsync(String tableName, String clusteringKey,
+			Hashtable<String, String> colNameType, Hashtable<String, String> colNameMin,
+			Hashtable<String, String> colNameMax) {
+		return submit(tableName, true, () -> {
+			dbApp.createTable(tableName, clusteringKey, colNameType, colNameMin, colNameMax);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> createIndexAsync(String tableName, String[] columnNames) {
+		return submit(tableName, true, () -> {
+			dbApp.createIndex(tableName, columnNames);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> insertAsync(String tableName, Hashtable<String, Object> colNameValue) {
+		return submit(tableName, true, () -> {
+			dbApp.insertIntoTable(tableName, colNameValue);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> updateAsync(String tableName, String clusteringKeyValue,
+			Hashtable<String, Object> colNameValue) {
+		return submit(tableName, true, () -> {
+			dbApp.updateTable(tableName, clusteringKeyValue, colNameValue);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deleteAsync(String tableName, Hashtable<String, Object> colNameValue) {
+		return submit(tableName, true, () -> {
+			dbApp.deleteFromTable(tableName, colNameValue);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Iterator> selectAsync(SQLTerm[] sqlTerms, String[] arrayOperators) {
+		return submit(getTableName(sqlTerms), false, () -> dbApp.selectFromTable(sqlTerms, arrayOperators));
+	}
+
+	public CompletableFuture<Iterator> selectAsync(SQLTerm[] sqlTerms, String[] arrayOperators,
+			String[] columnNames) {
+		return submit(getTableName(sqlTerms), false,
+				() -> dbApp.selectFromTable(sqlTerms, arrayOperators, columnNames));
+	}
+
+	public CompletableFuture<Integer> countAsync(SQLTerm[] sqlTerms, String[] arrayOperators) {
+		return submit(getTableName(sqlTerms), false, () -> dbApp.countFromTable(sqlTerms, arrayOperators));
+	}
+
+	public CompletableFuture<Boolean> existsAsync(SQLTerm[] sqlTerms, String[] arrayOperators) {
+		return submit(getTableName(sqlTerms), false, () -> dbApp.existsInTable(sqlTerms, arrayOperators));
+	}
+
+	/**
+	 * stops accepting operations, the submitted ones still complete
+	 */
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * queues the operation behind the operations on the table it has to wait for
+	 *
+	 * @param tableName the table the operation works on
+	 * @param write     whether the operation changes the table
+	 * @param op        the operation
+	 * @return the future of the result of the operation, failed with the exception
+	 *         it throws
+	 */
+	private <T> CompletableFuture<T> submit(String tableName, boolean write, Callable<T> op) {
+		CompletableFuture<T> res = new CompletableFuture<T>();
+		CompletableFuture<?> after;
+		synchronized (queues) {
+			TableQueue queue = queues.computeIfAbsent(tableName, k -> new TableQueue());
+			if (write) {
+				queue.reads.add(queue.lastWrite);
+				after = CompletableFuture.allOf(queue.reads.toArray(new CompletableFuture[0]));
+				queue.lastWrite = res;
+				queue.reads.clear();
+			} else {
+				after = queue.lastWrite;
+				queue.reads.removeIf(CompletableFuture::isDone);
+				queue.reads.add(res);
+			}
+		}
+
+		// runs even if an earlier operation failed, its failure is reported to its own
+		// caller
+		after.whenComplete((v, e) -> {
+			try {
+				executor.execute(() -> {
+					try {
+						res.complete(op.call());
+					} catch (Throwable t) {
+						res.completeExceptionally(t);
+					}
+				});
+			} catch (RejectedExecutionException ree) {
+				res.completeExceptionally(ree);
+			}
+		});
+		return res;
+	}
+
+	private static String getTableName(SQLTerm[] sqlTerms) {
+		return sqlTerms != null && sqlTerms.length > 0 && sqlTerms[0]._strTableName != null
+				? sqlTerms[0]._strTableName
+				: "";
+	}
+
+	private static ExecutorService newExecutor(int threads) {
+		if (threads == 0) {
+			try {
+				// looked up so the engine still builds for java versions without virtual
+				// threads
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				// falls back to a thread per running operation
+			}
+		}
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "async-dbapp");
+			t.setDaemon(true);
+			return t;
+		};
+		return threads == 0 ? Executors.newCachedThreadPool(factory) : Executors.newFixedThreadPool(threads, factory);
+	}
+}
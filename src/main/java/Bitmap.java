@@ -0,0 +1,352 @@
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * A compressed set of row ids in the style of roaring bitmaps. Ids are split into
+ * chunks of 2^16 keyed by their high 16 bits, a sparse chunk keeps the sorted low
+ * 16 bits of its ids in an array while a dense chunk is kept as a plain bitset
+ */
+public class Bitmap implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+	private static final int ARRAY_MAX = 4096; // above this a bitset chunk is smaller than an array chunk
+	private static final int AND = 0, OR = 1, XOR = 2, AND_NOT = 3;
+
+	private TreeMap<Integer, Container> containers;
+
+	public Bitmap() {
+		containers = new TreeMap<Integer, Container>();
+	}
+
+	public void add(int rowId) {
+		Container c = containers.get(rowId >>> 16);
+		if (c == null) {
+			c = new ArrayContainer();
+		}
+		containers.put(rowId >>> 16, c.add((char) rowId));
+	}
+
+	public void remove(int rowId) {
+		Container c = containers.get(rowId >>> 16);
+		if (c == null) {
+			return;
+		}
+		c = c.remove((char) rowId);
+		if (c.cardinality == 0) {
+			containers.remove(rowId >>> 16);
+		} else {
+			containers.put(rowId >>> 16, c);
+		}
+	}
+
+	public boolean contains(int rowId) {
+		Container c = containers.get(rowId >>> 16);
+		return c != null && c.contains((char) rowId);
+	}
+
+	public int getCardinality() {
+		int res = 0;
+		for (Container c : containers.values()) {
+			res += c.cardinality;
+		}
+		return res;
+	}
+
+	public boolean isEmpty() {
+		return containers.isEmpty();
+	}
+
+	public Bitmap and(Bitmap other) {
+		return combine(other, AND);
+	}
+
+	public Bitmap or(Bitmap other) {
+		return combine(other, OR);
+	}
+
+	public Bitmap xor(Bitmap other) {
+		return combine(other, XOR);
+	}
+
+	public Bitmap andNot(Bitmap other) {
+		return combine(other, AND_NOT);
+	}
+
+	/**
+	 * @return the row ids in ascending order
+	 */
+	public int[] toArray() {
+		int res[] = new int[getCardinality()];
+		int i = 0;
+		for (Entry<Integer, Container> e : containers.entrySet()) {
+			for (char low : e.getValue().toArray()) {
+				res[i++] = e.getKey() << 16 | low;
+			}
+		}
+		return res;
+	}
+
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * applies the operation chunk by chunk, chunks missing from one side are only
+	 * copied when the operation keeps them
+	 */
+	private Bitmap combine(Bitmap other, int op) {
+		Bitmap res = new Bitmap();
+		for (Entry<Integer, Container> e : containers.entrySet()) {
+			Container o = other.containers.get(e.getKey());
+			if (o != null) {
+				Container c = combine(e.getValue(), o, op);
+				if (c.cardinality > 0) {
+					res.containers.put(e.getKey(), c);
+				}
+			} else if (op != AND) {
+				res.containers.put(e.getKey(), e.getValue().copy());
+			}
+		}
+		if (op == OR || op == XOR) {
+			for (Entry<Integer, Container> e : other.containers.entrySet()) {
+				if (!containers.containsKey(e.getKey())) {
+					res.containers.put(e.getKey(), e.getValue().copy());
+				}
+			}
+		}
+		return res;
+	}
+
+	private static Container combine(Container a, Container b, int op) {
+		if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+			return merge((ArrayContainer) a, (ArrayContainer) b, op);
+		}
+
+		long words[] = a.toWords(), otherWords[] = b.toWords();
+		for (int i = 0; i < words.length; ++i) {
+			switch (op) {
+				case AND:
+					words[i] &= otherWords[i];
+					break;
+				case OR:
+					words[i] |= otherWords[i];
+					break;
+				case XOR:
+					words[i] ^= otherWords[i];
+					break;
+				default:
+					words[i] &= ~otherWords[i];
+					break;
+			}
+		}
+		return fromWords(words);
+	}
+
+	/**
+	 * merges two sorted array chunks without expanding them to bitsets
+	 */
+	private static Container merge(ArrayContainer a, ArrayContainer b, int op) {
+		char res[] = new char[a.cardinality + b.cardinality];
+		int i = 0, j = 0, k = 0;
+		while (i < a.cardinality || j < b.cardinality) {
+			char value;
+			boolean inA, inB;
+			if (j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+				value = a.values[i++];
+				inA = true;
+				inB = false;
+			} else if (i == a.cardinality || b.values[j] < a.values[i]) {
+				value = b.values[j++];
+				inA = false;
+				inB = true;
+			} else {
+				value = a.values[i++];
+				j++;
+				inA = inB = true;
+			}
+
+			boolean keep;
+			switch (op) {
+				case AND:
+					keep = inA && inB;
+					break;
+				case OR:
+					keep = inA || inB;
+					break;
+				case XOR:
+					keep = inA ^ inB;
+					break;
+				default:
+					keep = inA && !inB;
+					break;
+			}
+			if (keep) {
+				res[k++] = value;
+			}
+		}
+
+		if (k > ARRAY_MAX) {
+			return fromWords(new ArrayContainer(res, k).toWords());
+		}
+		return new ArrayContainer(res, k);
+	}
+
+	private static Container fromWords(long words[]) {
+		int cardinality = 0;
+		for (long word : words) {
+			cardinality += Long.bitCount(word);
+		}
+		if (cardinality > ARRAY_MAX) {
+			return new BitsetContainer(words, cardinality);
+		}
+		return new ArrayContainer(wordsToArray(words, cardinality), cardinality);
+	}
+
+	private static char[] wordsToArray(long words[], int cardinality) {
+		char res[] = new char[cardinality];
+		int k = 0;
+		for (int i = 0; i < words.length; ++i) {
+			long word = words[i];
+			while (word != 0) {
+				res[k++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * the ids of one chunk, operations that change the representation return the
+	 * new container
+	 */
+	private static abstract class Container implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		protected int cardinality;
+
+		abstract Container add(char low);
+
+		abstract Container remove(char low);
+
+		abstract boolean contains(char low);
+
+		abstract char[] toArray();
+
+		abstract long[] toWords();
+
+		abstract Container copy();
+	}
+
+	private static class ArrayContainer extends Container {
+
+		private static final long serialVersionUID = 1L;
+		private char values[];
+
+		ArrayContainer() {
+			values = new char[4];
+		}
+
+		ArrayContainer(char values[], int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		Container add(char low) {
+			int idx = Arrays.binarySearch(values, 0, cardinality, low);
+			if (idx >= 0) {
+				return this;
+			}
+			if (cardinality == ARRAY_MAX) {
+				return new BitsetContainer(toWords(), cardinality).add(low);
+			}
+			idx = -idx - 1;
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_MAX));
+			}
+			System.arraycopy(values, idx, values, idx + 1, cardinality - idx);
+			values[idx] = low;
+			cardinality++;
+			return this;
+		}
+
+		Container remove(char low) {
+			int idx = Arrays.binarySearch(values, 0, cardinality, low);
+			if (idx >= 0) {
+				System.arraycopy(values, idx + 1, values, idx, cardinality - idx - 1);
+				cardinality--;
+			}
+			return this;
+		}
+
+		boolean contains(char low) {
+			return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+		}
+
+		char[] toArray() {
+			return Arrays.copyOf(values, cardinality);
+		}
+
+		long[] toWords() {
+			long words[] = new long[1024];
+			for (int i = 0; i < cardinality; ++i) {
+				words[values[i] >>> 6] |= 1L << values[i];
+			}
+			return words;
+		}
+
+		Container copy() {
+			return new ArrayContainer(toArray(), cardinality);
+		}
+	}
+
+	private static class BitsetContainer extends Container {
+
+		private static final long serialVersionUID = 1L;
+		private long words[];
+
+		BitsetContainer(long words[], int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		Container add(char low) {
+			if (!contains(low)) {
+				words[low >>> 6] |= 1L << low;
+				cardinality++;
+			}
+			return this;
+		}
+
+		Container remove(char low) {
+			if (contains(low)) {
+				words[low >>> 6] &= ~(1L << low);
+				cardinality--;
+				if (cardinality <= ARRAY_MAX) {
+					return new ArrayContainer(toArray(), cardinality);
+				}
+			}
+			return this;
+		}
+
+		boolean contains(char low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		char[] toArray() {
+			return wordsToArray(words, cardinality);
+		}
+
+		long[] toWords() {
+			return words.clone();
+		}
+
+		Container copy() {
+			return new BitsetContainer(toWords(), cardinality);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+import java.io.Serializable;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * A bitmap index for columns with few distinct values. Every distinct value of an
+ * indexed column keeps a compressed bitmap of the row ids of the tuples holding
+ * it. Row ids never change when tuples are shifted between pages so, unlike the
+ * grid and hash indices, nothing has to be updated on overflow
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class BitmapIndex implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+	private Hashtable<String, TreeMap<Object, Bitmap>> colNameValueBitmaps;
+	private Bitmap rowIds; // all the rows in the table, used for `!=`
+	private int indexId;
+
+	/**
+	 * @param strarrColName the columns to be indexed
+	 * @param indexId       the id of the index within its table
+	 */
+	public BitmapIndex(String[] strarrColName, int indexId) {
+		this.indexId = indexId;
+		colNameValueBitmaps = new Hashtable<String, TreeMap<Object, Bitmap>>();
+		for (String colName : strarrColName) {
+			colNameValueBitmaps.put(colName, new TreeMap<Object, Bitmap>());
+		}
+		rowIds = new Bitmap();
+	}
+
+	/**
+	 * adds the row id to the bitmaps of the values of the tuple
+	 *
+	 * @param htblColNameValue the values of the tuple
+	 * @param rowId            the row id of the tuple
+	 */
+	public void insert(Hashtable<String, Object> htblColNameValue, int rowId) {
+		rowIds.add(rowId);
+		for (Entry<String, TreeMap<Object, Bitmap>> e : colNameValueBitmaps.entrySet()) {
+			Object value = htblColNameValue.get(e.getKey());
+			if (value == null) { // null values are only part of `!=` results
+				continue;
+			}
+			Bitmap bitmap = e.getValue().get(value);
+			if (bitmap == null) {
+				bitmap = new Bitmap();
+				e.getValue().put(value, bitmap);
+			}
+			bitmap.add(rowId);
+		}
+	}
+
+	/**
+	 * removes the row id from the bitmaps of the values of the tuple
+	 *
+	 * @param htblColNameValue the values of the tuple before removal
+	 * @param rowId            the row id of the tuple
+	 */
+	public void remove(Hashtable<String, Object> htblColNameValue, int rowId) {
+		rowIds.remove(rowId);
+		for (Entry<String, TreeMap<Object, Bitmap>> e : colNameValueBitmaps.entrySet()) {
+			Object value = htblColNameValue.get(e.getKey());
+			Bitmap bitmap = value != null ? e.getValue().get(value) : null;
+			if (bitmap != null) {
+				bitmap.remove(rowId);
+				if (bitmap.isEmpty()) {
+					e.getValue().remove(value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * removes the deleted row ids from every bitmap
+	 *
+	 * @param deletedRowIds the row ids of the deleted tuples
+	 */
+	public void removeAll(Bitmap deletedRowIds) {
+		rowIds = rowIds.andNot(deletedRowIds);
+		for (TreeMap<Object, Bitmap> valueBitmaps : colNameValueBitmaps.values()) {
+			for (Object value : valueBitmaps.keySet().toArray()) {
+				Bitmap bitmap = valueBitmaps.get(value).andNot(deletedRowIds);
+				if (bitmap.isEmpty()) {
+					valueBitmaps.remove(value);
+				} else {
+					valueBitmaps.put(value, bitmap);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param sqlTerm a term on one of the indexed columns
+	 * @return the row ids of the tuples satisfying the term
+	 */
+	public Bitmap get(SQLTerm sqlTerm) {
+		TreeMap<Object, Bitmap> valueBitmaps = colNameValueBitmaps.get(sqlTerm._strColumnName);
+		Object value = sqlTerm._objValue;
+
+		Bitmap res = new Bitmap();
+		switch (sqlTerm._strOperator) {
+			case "=":
+				return valueBitmaps.containsKey(value) ? res.or(valueBitmaps.get(value)) : res;
+			case "!=":
+				return valueBitmaps.containsKey(value) ? rowIds.andNot(valueBitmaps.get(value)) : res.or(rowIds);
+			case ">":
+				return union(valueBitmaps.tailMap(value, false));
+			case ">=":
+				return union(valueBitmaps.tailMap(value, true));
+			case "<":
+				return union(valueBitmaps.headMap(value, false));
+			case "<=":
+				return union(valueBitmaps.headMap(value, true));
+			default:
+				return res;
+		}
+	}
+
+	public boolean isOnColumn(String colName) {
+		return colNameValueBitmaps.containsKey(colName);
+	}
+
+	public int getIndexId() {
+		return indexId;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("BITMAP " + indexId + " over " + rowIds.getCardinality() + " rows\n");
+		for (Entry<String, TreeMap<Object, Bitmap>> e : colNameValueBitmaps.entrySet()) {
+			sb.append(e.getKey()).append("\n");
+			for (Entry<Object, Bitmap> v : e.getValue().entrySet()) {
+				sb.append("Value ").append(v.getKey()).append(": ").append(v.getValue()).append("\n");
+			}
+		}
+		return sb.toString();
+	}
+
+	private Bitmap union(Map<Object, Bitmap> valueBitmaps) {
+		Bitmap res = new Bitmap();
+		for (Bitmap bitmap : valueBitmaps.values()) {
+			res = res.or(bitmap);
+		}
+		return res;
+	}
+}
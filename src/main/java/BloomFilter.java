@@ -0,0 +1,54 @@
+import java.io.Serializable;
+
+/**
+ * A bloom filter over the values of a column in one page. It can tell for sure
+ * that a value is not in the page, so the page doesn't have to be loaded to find
+ * that out
+ */
+public class BloomFilter implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+	private static final int BITS_PER_VALUE = 10, HASHES = 7; // about 1% false positives
+
+	private long bits[];
+
+	/**
+	 * @param expectedValues the number of values to be added
+	 */
+	public BloomFilter(int expectedValues) {
+		bits = new long[Math.max(1, (expectedValues * BITS_PER_VALUE + 63) / 64)];
+	}
+
+	public void add(Object value) {
+		int h = hash(value), step = Integer.rotateLeft(h, 16) | 1;
+		long size = bits.length * 64L;
+		for (int i = 0; i < HASHES; ++i) {
+			int bit = (int) (((h + (long) i * step) & 0x7fffffffL) % size);
+			bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * @return false if the value was never added, true if it may have been
+	 */
+	public boolean mightContain(Object value) {
+		int h = hash(value), step = Integer.rotateLeft(h, 16) | 1;
+		long size = bits.length * 64L;
+		for (int i = 0; i < HASHES; ++i) {
+			int bit = (int) (((h + (long) i * step) & 0x7fffffffL) % size);
+			if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int hash(Object value) {
+		// spreads the bits of hashCode as close values have close hash codes
+		int h = value.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 15);
+	}
+}
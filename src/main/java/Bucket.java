@@ -1,8 +1,4 @@
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Hashtable;
 import java.util.LinkedList;
@@ -19,12 +15,18 @@ public class Bucket implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private String pageName;
 		private int rowNumber;
+		private Hashtable<String, Object> values; // indexed values, only kept by indices that need them
 
 		public Pair(String pageName, int rowNumber) {
 			this.pageName = pageName;
 			this.rowNumber = rowNumber;
 		}
 
+		public Pair(String pageName, int rowNumber, Hashtable<String, Object> values) {
+			this(pageName, rowNumber);
+			this.values = values;
+		}
+
 		public String getPageName() {
 			return pageName;
 		}
@@ -33,6 +35,10 @@ public class Bucket implements Serializable {
 			return rowNumber;
 		}
 
+		public Hashtable<String, Object> getValues() {
+			return values;
+		}
+
 		public String toString() {
 			return this.pageName + " " + this.rowNumber;
 		}
@@ -58,9 +64,25 @@ public class Bucket implements Serializable {
 		save();
 	}
 
+	public void insert(String pageName, int row, Hashtable<String, Object> values) throws IOException {
+		refs.add(new Pair(pageName, row, values));
+		save();
+	}
+
+	/**
+	 * adds a reference without saving the bucket, used when filling buckets in bulk
+	 * which are saved once afterwards
+	 */
+	void addRef(String pageName, int row, Hashtable<String, Object> values) {
+		refs.add(new Pair(pageName, row, values));
+	}
+
 	public boolean remove(Hashtable<String, Object> htblColNameValue) throws ClassNotFoundException, IOException {
 		for (int i = 0; i < refs.size(); ++i) {
 			Pair p = refs.get(i);
+			if (p.getValues() != null && !valuesMatch(p.getValues(), htblColNameValue)) {
+				continue; // no need to load the page of a reference with different values
+			}
 			Page page = loadPage(p.getPageName());
 			Tuple t = page.getTupleAt(p.getRowNumber());
 			boolean flag = true;
@@ -122,6 +144,15 @@ public class Bucket implements Serializable {
 			save();
 	}
 
+	private boolean valuesMatch(Hashtable<String, Object> values, Hashtable<String, Object> htblColNameValue) {
+		for (Entry<String, Object> e : values.entrySet()) {
+			if (!e.getValue().equals(htblColNameValue.get(e.getKey()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public boolean isFull() {
 		return refs.size() == maxSize;
 	}
@@ -139,15 +170,17 @@ public class Bucket implements Serializable {
 	}
 
 	public void save() throws IOException {
-		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(path));
-		oos.writeObject(this);
-		oos.close();
+		Events.BucketWrite event = new Events.BucketWrite();
+		event.begin();
+		BufferPool.write(path, this);
+		event.end(path, refs.size());
 	}
 
 	private Page loadPage(String pageName) throws IOException, ClassNotFoundException {
-		ObjectInputStream ois = new ObjectInputStream(new FileInputStream(tableDir + pageName));
-		Page page = (Page) ois.readObject();
-		ois.close();
+		Events.PageRead event = new Events.PageRead();
+		event.begin();
+		Page page = (Page) BufferPool.read(tableDir + pageName);
+		event.end(tableDir + pageName, page.getSize());
 		return page;
 	}
 
@@ -0,0 +1,815 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Caches the contents of the page, bucket, table and metadata files. Every read
+ * and write of these files goes through the pool: writes made inside a
+ * transaction stay private to it until it commits, then they are logged and kept
+ * in the pool as dirty frames which are written to their files lazily, when the
+ * pool runs out of space or on checkpoints. Since a frame only becomes dirty once
+ * its image is in the log, flushing it never needs to wait for the log.
+ *
+ * A background checkpointer writes the dirty frames to their files every while
+ * without stopping commits and then logs where recovery has to start from, so the
+ * log replayed on restart stays short. Frames written out by eviction aren't
+ * forced to disk, so checkpoints force them first.
+ *
+ * Every commit installs its frames under a new commit version. Readers running
+ * on a snapshot see the newest image of each file committed before their
+ * snapshot, so the images a commit replaces are kept in the frame for as long as
+ * an older snapshot is open. Frames holding old images are never evicted and the
+ * images are dropped once the last snapshot needing them ends
+ */
+public class BufferPool {
+
+	private static int capacity = 1024; // number of files kept in memory
+	private static long maxLogSize = 64L << 20; // the log is checkpointed once it grows past this
+	private static long checkpointInterval = 30000; // milliseconds between background checkpoints
+	private static Thread checkpointer;
+
+	private static LinkedHashMap<String, Frame> frames = new LinkedHashMap<String, Frame>(16, 0.75f, true);
+	private static int dirtyFrames;
+	private static long commitVersion; // version of the last installed commit
+	private static TreeMap<Long, Integer> snapshots = new TreeMap<Long, Integer>(); // open snapshots and their count
+	private static HashSet<String> versionedPaths = new HashSet<String>(); // files whose frames hold old images
+	private static HashSet<String> unsyncedPaths = new HashSet<String>(); // files written or deleted but not forced
+	private static Vector<WriteAheadLog> logs = new Vector<WriteAheadLog>();
+
+	// commits hold it shared from logging until their frames are in the pool,
+	// checkpoints hold it exclusively so the log is never truncated in between
+	private static ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+	private static final LongAdder hits = Metrics.counter("bufferpool.hits"),
+			misses = Metrics.counter("bufferpool.misses"), pageReads = Metrics.counter("page.reads"),
+			pageWrites = Metrics.counter("page.writes"), bucketReads = Metrics.counter("bucket.reads"),
+			bucketWrites = Metrics.counter("bucket.writes"), bytesSerialized = Metrics.counter("bytes.serialized"),
+			bytesDeserialized = Metrics.counter("bytes.deserialized"), diskReads = Metrics.counter("disk.bytesRead"),
+			diskWrites = Metrics.counter("disk.bytesWritten");
+
+	static {
+		Metrics.gauge("bufferpool.frames", () -> frameCount());
+		Metrics.gauge("bufferpool.dirtyFrames", () -> dirtyFrameCount());
+		Metrics.gauge("bufferpool.hitRatio", () -> {
+			long h = hits.sum(), m = misses.sum();
+			return h + m == 0 ? 0.0 : h / (double) (h + m);
+		});
+
+		// dirty frames reach their files when the JVM exits normally
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				checkpoint();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}));
+	}
+
+	private static class Frame {
+		byte data[]; // null if the file was deleted
+		boolean dirty;
+		long lsn; // log sequence number of the commit that wrote this image
+		long version; // commit version of the image, 0 for images read from disk
+		Vector<Version> versions; // older images still needed by snapshots, oldest first
+
+		Frame(byte data[], boolean dirty) {
+			this.data = data;
+			this.dirty = dirty;
+			this.versions = new Vector<Version>();
+		}
+
+		/**
+		 * @return the newest image committed at or before the snapshot
+		 */
+		byte[] getData(long snapshot) {
+			if (snapshot < 0 || version <= snapshot) {
+				return data;
+			}
+			for (int i = versions.size() - 1; i >= 0; --i) {
+				if (versions.get(i).version <= snapshot) {
+					return versions.get(i).data;
+				}
+			}
+			return versions.isEmpty() ? data : versions.get(0).data;
+		}
+	}
+
+	private static class Version {
+		long version;
+		byte data[];
+
+		Version(long version, byte data[]) {
+			this.version = version;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * @param intCapacity           the number of files kept in memory
+	 * @param lngMaxLogSize         the size in bytes the log may reach before a
+	 *                              checkpoint
+	 * @param lngCheckpointInterval the milliseconds between background checkpoints
+	 */
+	public static synchronized void configure(int intCapacity, long lngMaxLogSize, long lngCheckpointInterval) {
+		capacity = intCapacity;
+		maxLogSize = lngMaxLogSize;
+		checkpointInterval = lngCheckpointInterval;
+		if (checkpointer == null) {
+			checkpointer = new Thread(() -> {
+				while (true) {
+					try {
+						Thread.sleep(checkpointInterval);
+						fuzzyCheckpoint();
+					} catch (InterruptedException e) {
+						return;
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			}, "checkpointer");
+			checkpointer.setDaemon(true);
+			checkpointer.start();
+		}
+	}
+
+	static synchronized void register(WriteAheadLog log) {
+		for (int i = 0; i < logs.size(); ++i) {
+			if (logs.get(i).getPath().equals(log.getPath())) {
+				logs.remove(i--);
+			}
+		}
+		logs.add(log);
+	}
+
+	/**
+	 * @param path the path of the file
+	 * @return the object stored in the file
+	 * @throws FileNotFoundException  when the file doesn't exist
+	 * @throws IOException            when reading the file fails
+	 * @throws ClassNotFoundException when the object can't be deserialized
+	 */
+	public static Object read(String path) throws IOException, ClassNotFoundException {
+		SlowQueryLog.Stats stats = SlowQueryLog.current();
+		long start = stats != null ? System.nanoTime() : 0;
+		byte data[] = readBytes(path);
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+		Object res = ois.readObject();
+		ois.close();
+		bytesDeserialized.add(data.length);
+		if (res instanceof Page) {
+			pageReads.increment();
+		} else if (res instanceof Bucket) {
+			bucketReads.increment();
+		}
+		if (stats != null) {
+			stats.read(res, System.nanoTime() - start);
+		}
+		return res;
+	}
+
+	/**
+	 * @param path the path of the file
+	 * @return the contents of the file as seen by the current transaction
+	 * @throws FileNotFoundException when the file doesn't exist
+	 * @throws IOException           when reading the file fails
+	 */
+	public static byte[] readBytes(String path) throws IOException {
+		path = key(path);
+		Transaction txn = Transaction.current();
+		if (txn != null && txn.hasWritten(path)) {
+			hits.increment();
+			return checkExists(path, txn.getWritten(path));
+		}
+		long snapshot = txn != null ? txn.getSnapshot() : -1;
+
+		synchronized (BufferPool.class) {
+			Frame frame = frames.get(path);
+			if (frame != null) {
+				hits.increment();
+				return checkExists(path, frame.getData(snapshot));
+			}
+		}
+
+		// the latch makes threads missing the same file read it once, and keeps it
+		// from being written while it is read
+		byte data[];
+		Lock latch = LockManager.latch(path);
+		latch.lock();
+		try {
+			synchronized (BufferPool.class) {
+				Frame frame = frames.get(path);
+				if (frame != null) { // read by another thread meanwhile
+					hits.increment();
+					return checkExists(path, frame.getData(snapshot));
+				}
+			}
+
+			// a file changed after an open snapshot always has a frame, so the file
+			// on disk is what every snapshot sees
+			misses.increment();
+			SlowQueryLog.Stats stats = txn != null ? txn.getStats() : null;
+			long start = stats != null ? System.nanoTime() : 0;
+			data = readFile(path);
+			if (stats != null) {
+				stats.diskRead(System.nanoTime() - start);
+			}
+
+			synchronized (BufferPool.class) {
+				Frame frame = frames.get(path);
+				if (frame != null) { // committed while reading
+					data = checkExists(path, frame.getData(snapshot));
+				} else {
+					frames.put(path, new Frame(data, false));
+				}
+			}
+		} finally {
+			latch.unlock();
+		}
+		evict();
+		return data;
+	}
+
+	/**
+	 * writes the object to the file, within a transaction the write is only seen by
+	 * it until it commits
+	 *
+	 * @param path the path of the file
+	 * @param obj  the object to be stored
+	 * @throws IOException when serializing or writing fails
+	 */
+	public static void write(String path, Serializable obj) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(obj);
+		oos.close();
+		bytesSerialized.add(bos.size());
+		if (obj instanceof Page) {
+			pageWrites.increment();
+		} else if (obj instanceof Bucket) {
+			bucketWrites.increment();
+		}
+		writeBytes(path, bos.toByteArray());
+	}
+
+	public static void writeBytes(String path, byte data[]) throws IOException {
+		path = key(path);
+		Transaction txn = Transaction.current();
+		if (txn != null) {
+			txn.write(path, data);
+			return;
+		}
+
+		writeThrough(path, data);
+		evict();
+	}
+
+	public static void delete(String path) throws IOException {
+		path = key(path);
+		Transaction txn = Transaction.current();
+		if (txn != null) {
+			txn.write(path, null);
+			return;
+		}
+		writeThrough(path, null);
+	}
+
+	/**
+	 * outside a transaction the file is written through as a commit of its own, the
+	 * image it replaces is kept for open snapshots like a commit's
+	 *
+	 * @param data the contents of the file, null to delete it
+	 */
+	private static void writeThrough(String path, byte data[]) throws IOException {
+		Lock latch = LockManager.latch(path);
+		latch.lock();
+		try {
+			byte diskImage[] = null;
+			if (!hasFrame(path)) { // read before it is overwritten, in case a snapshot opens meanwhile
+				diskImage = new File(path).exists() ? readFile(path) : null;
+			}
+			if (data == null) {
+				deleteFile(path, false);
+			} else {
+				writeFile(path, data, false);
+			}
+
+			synchronized (BufferPool.class) {
+				Frame frame = frames.get(path);
+				if (frame == null) {
+					frame = new Frame(diskImage, false);
+					frames.put(path, frame);
+				}
+				if (!snapshots.isEmpty() && snapshots.lastKey() >= frame.version) {
+					frame.versions.add(new Version(frame.version, frame.data));
+					versionedPaths.add(path);
+				}
+				if (frame.dirty) {
+					dirtyFrames--;
+				}
+				frame.data = data;
+				frame.dirty = false;
+				frame.version = ++commitVersion;
+				if (data == null && frame.versions.isEmpty()) {
+					frames.remove(path);
+				}
+			}
+		} finally {
+			latch.unlock();
+		}
+	}
+
+	public static boolean exists(String path) {
+		path = key(path);
+		Transaction txn = Transaction.current();
+		if (txn != null && txn.hasWritten(path)) {
+			return txn.getWritten(path) != null;
+		}
+		long snapshot = txn != null ? txn.getSnapshot() : -1;
+
+		Lock latch = LockManager.latch(path);
+		latch.lock();
+		try {
+			synchronized (BufferPool.class) {
+				Frame frame = frames.get(path);
+				if (frame != null) {
+					return frame.getData(snapshot) != null;
+				}
+			}
+			return new File(path).exists();
+		} finally {
+			latch.unlock();
+		}
+	}
+
+	/**
+	 * logs the writes of a transaction, waits for the log to be flushed with the
+	 * other transactions committing at the same time and then installs the writes
+	 * as dirty frames
+	 */
+	static void commit(WriteAheadLog log, long txnId, Map<String, byte[]> writes) throws IOException {
+		checkpointLock.readLock().lock();
+		try {
+			// the images replaced are the bases of the deltas logged
+			HashMap<String, byte[]> bases = new HashMap<String, byte[]>();
+			synchronized (BufferPool.class) {
+				for (String path : writes.keySet()) {
+					Frame frame = frames.get(path);
+					if (frame != null && frame.data != null) {
+						bases.put(path, frame.data);
+					}
+				}
+			}
+			long lsn = log.append(txnId, writes, bases);
+			log.flush(lsn);
+
+			// the images replaced by the commit are kept for open snapshots, those of
+			// files without a frame are read from disk first
+			HashMap<String, byte[]> diskImages = new HashMap<String, byte[]>(); // null for missing files
+			while (true) {
+				for (String path : writes.keySet()) {
+					if (hasSnapshots() && !hasFrame(path) && !diskImages.containsKey(path)) {
+						diskImages.put(path, readDiskImage(path));
+					}
+				}
+
+				synchronized (BufferPool.class) {
+					boolean missing = false;
+					for (String path : writes.keySet()) {
+						missing |= !snapshots.isEmpty() && !frames.containsKey(path) && !diskImages.containsKey(path);
+					}
+					if (missing) { // evicted or a snapshot opened meanwhile
+						continue;
+					}
+
+					long version = ++commitVersion;
+					for (Entry<String, byte[]> e : writes.entrySet()) {
+						Frame frame = frames.get(e.getKey());
+						if (frame == null) {
+							frame = new Frame(diskImages.get(e.getKey()), false);
+							frames.put(e.getKey(), frame);
+						} else if (frame.lsn > lsn) { // a later commit got installed first
+							continue;
+						}
+						if (!snapshots.isEmpty() && snapshots.lastKey() >= frame.version) {
+							frame.versions.add(new Version(frame.version, frame.data));
+							versionedPaths.add(e.getKey());
+						}
+						if (!frame.dirty) {
+							dirtyFrames++;
+						}
+						frame.data = e.getValue();
+						frame.dirty = true;
+						frame.lsn = lsn;
+						frame.version = version;
+					}
+					break;
+				}
+			}
+		} finally {
+			checkpointLock.readLock().unlock();
+		}
+
+		evict();
+		if (log.size() > maxLogSize) {
+			checkpoint();
+		}
+	}
+
+	/**
+	 * @return the commit version the snapshot reads at, every commit installed
+	 *         after it stays invisible to the snapshot until it is closed
+	 */
+	static synchronized long openSnapshot() {
+		snapshots.merge(commitVersion, 1, Integer::sum);
+		return commitVersion;
+	}
+
+	static synchronized void closeSnapshot(long snapshot) {
+		if (snapshots.merge(snapshot, -1, Integer::sum) == 0) {
+			snapshots.remove(snapshot);
+		}
+
+		// drops the old images no open snapshot reads anymore
+		Iterator<String> it = versionedPaths.iterator();
+		while (it.hasNext()) {
+			Frame frame = frames.get(it.next());
+			if (frame == null) { // replaced outside a transaction
+				it.remove();
+				continue;
+			}
+			for (int i = frame.versions.size() - 1; i >= 0; --i) {
+				long from = frame.versions.get(i).version;
+				long to = i + 1 < frame.versions.size() ? frame.versions.get(i + 1).version : frame.version;
+				Long reader = snapshots.ceilingKey(from);
+				if (reader == null || reader >= to) {
+					frame.versions.remove(i);
+				}
+			}
+			if (frame.versions.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * writes every dirty frame to its file and empties the logs as nothing in them
+	 * is needed anymore. Commits only wait for the frames dirtied during the fuzzy
+	 * checkpoint done first
+	 *
+	 * @throws IOException when writing the files fails
+	 */
+	public static void checkpoint() throws IOException {
+		fuzzyCheckpoint();
+		checkpointLock.writeLock().lock();
+		try {
+			flushDirtyFrames(true);
+			syncUnsyncedPaths();
+			for (WriteAheadLog log : logs) {
+				log.truncate();
+			}
+		} finally {
+			checkpointLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * writes the frames that are dirty now to their files while commits go on, then
+	 * logs a checkpoint record so recovery skips everything committed before it
+	 *
+	 * @throws IOException when writing the files fails
+	 */
+	public static void fuzzyCheckpoint() throws IOException {
+		Hashtable<WriteAheadLog, Long> redoLsns = new Hashtable<WriteAheadLog, Long>();
+		Vector<String> dirty;
+
+		// no commit is between logging and installing its frames here, so every
+		// image before these log sequence numbers is in a frame or a file
+		checkpointLock.writeLock().lock();
+		try {
+			for (WriteAheadLog log : logs) {
+				redoLsns.put(log, log.getLsn());
+			}
+			dirty = getDirtyPaths();
+		} finally {
+			checkpointLock.writeLock().unlock();
+		}
+
+		for (String path : dirty) {
+			writeBack(path, true);
+		}
+		// frames evicted before being written back above are on disk but maybe not on
+		// the platters, they must be before the log stops replaying them
+		syncUnsyncedPaths();
+
+		for (Entry<WriteAheadLog, Long> e : redoLsns.entrySet()) {
+			e.getKey().checkpoint(e.getValue());
+		}
+	}
+
+	/**
+	 * writes an image replayed from the log straight to its file
+	 *
+	 * @param path the path of the file
+	 * @param data the contents of the file, null if it was deleted
+	 */
+	static void redo(String path, byte data[]) throws IOException {
+		path = key(path);
+		Lock latch = LockManager.latch(path);
+		latch.lock();
+		try {
+			synchronized (BufferPool.class) {
+				Frame old = frames.remove(path);
+				if (old != null && old.dirty) {
+					dirtyFrames--;
+				}
+			}
+			if (data == null) {
+				deleteFile(path, true);
+			} else {
+				writeFile(path, data, true);
+			}
+		} finally {
+			latch.unlock();
+		}
+	}
+
+	private static synchronized int frameCount() {
+		return frames.size();
+	}
+
+	private static synchronized int dirtyFrameCount() {
+		return dirtyFrames;
+	}
+
+	private static synchronized boolean hasSnapshots() {
+		return !snapshots.isEmpty();
+	}
+
+	private static synchronized boolean hasFrame(String path) {
+		return frames.containsKey(path);
+	}
+
+	/**
+	 * @return the contents of the file on disk, null if it doesn't exist
+	 */
+	private static byte[] readDiskImage(String path) throws IOException {
+		Lock latch = LockManager.latch(path);
+		latch.lock();
+		try {
+			return new File(path).exists() ? readFile(path) : null;
+		} finally {
+			latch.unlock();
+		}
+	}
+
+	/**
+	 * @return the path normalized, so a file is always cached under the same key
+	 */
+	private static String key(String path) {
+		return new File(path).getPath();
+	}
+
+	private static byte[] checkExists(String path, byte data[]) throws FileNotFoundException {
+		if (data == null) {
+			throw new FileNotFoundException(path + " (No such file or directory)");
+		}
+		return data;
+	}
+
+	/**
+	 * drops the least recently used clean frames once the pool is full, dirty
+	 * frames are written out first if they take half of the pool
+	 */
+	private static void evict() throws IOException {
+		boolean flush;
+		synchronized (BufferPool.class) {
+			if (frames.size() <= capacity) {
+				return;
+			}
+			flush = dirtyFrames > capacity / 2;
+		}
+		if (flush) {
+			flushDirtyFrames(false);
+		}
+		synchronized (BufferPool.class) {
+			Iterator<Frame> it = frames.values().iterator();
+			while (frames.size() > capacity && it.hasNext()) {
+				Frame frame = it.next();
+				if (!frame.dirty && frame.versions.isEmpty()) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private static void flushDirtyFrames(boolean sync) throws IOException {
+		for (String path : getDirtyPaths()) {
+			writeBack(path, sync);
+		}
+	}
+
+	private static synchronized Vector<String> getDirtyPaths() {
+		Vector<String> res = new Vector<String>();
+		for (Entry<String, Frame> e : frames.entrySet()) {
+			if (e.getValue().dirty) {
+				res.add(e.getKey());
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * writes the frame of the file to disk if it is dirty. The contents are taken
+	 * while holding the latch of the file, so a write never replaces newer contents
+	 * written by another thread
+	 */
+	private static void writeBack(String path, boolean sync) throws IOException {
+		Lock latch = LockManager.latch(path);
+		latch.lock();
+		try {
+			Frame frame;
+			byte data[];
+			synchronized (BufferPool.class) {
+				frame = frames.get(path);
+				if (frame == null || !frame.dirty) {
+					return;
+				}
+				data = frame.data;
+			}
+
+			if (data == null) {
+				deleteFile(path, sync);
+			} else {
+				writeFile(path, data, sync);
+			}
+
+			synchronized (BufferPool.class) {
+				if (frames.get(path) == frame && frame.dirty && frame.data == data) { // not changed meanwhile
+					if (data == null && frame.versions.isEmpty()) {
+						frames.remove(path);
+					} else {
+						frame.dirty = false;
+					}
+					dirtyFrames--;
+				}
+			}
+		} finally {
+			latch.unlock();
+		}
+	}
+
+	/**
+	 * reads the whole file with positional reads on a channel. Blocking I/O is only
+	 * ever done holding latches, never a monitor, so a virtual thread waiting on
+	 * the disk doesn't pin its carrier thread
+	 *
+	 * @throws FileNotFoundException when the file doesn't exist
+	 */
+	private static byte[] readFile(String path) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(path + " (No such file or directory)");
+		}
+		try {
+			ByteBuffer bb = ByteBuffer.allocate((int) channel.size());
+			while (bb.hasRemaining() && channel.read(bb, bb.position()) >= 0)
+				;
+			diskReads.add(bb.position());
+			return bb.position() == bb.capacity() ? bb.array() : Arrays.copyOf(bb.array(), bb.position());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * writes the file through a temporary file renamed over it, so a crash never
+	 * leaves a half written file behind. Unless synced, the file is forced later by
+	 * syncUnsyncedPaths
+	 */
+	private static void writeFile(String path, byte data[], boolean sync) throws IOException {
+		File file = new File(path), tmp = new File(path + ".tmp");
+		file.getParentFile().mkdirs();
+		FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer bb = ByteBuffer.wrap(data);
+			while (bb.hasRemaining()) {
+				channel.write(bb, bb.position());
+			}
+			if (sync) {
+				channel.force(false);
+			}
+		} finally {
+			channel.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		diskWrites.add(data.length);
+		if (sync) {
+			syncDirectory(file.getParentFile());
+		} else {
+			synchronized (BufferPool.class) {
+				unsyncedPaths.add(path);
+			}
+		}
+	}
+
+	private static void deleteFile(String path, boolean sync) throws IOException {
+		File file = new File(path);
+		Files.deleteIfExists(file.toPath());
+		if (sync) {
+			syncDirectory(file.getParentFile());
+		} else {
+			synchronized (BufferPool.class) {
+				unsyncedPaths.add(path);
+			}
+		}
+	}
+
+	/**
+	 * forces the files written or deleted without syncing, and their directories,
+	 * to disk. A file being written back meanwhile holds its latch, so once this
+	 * returns every write back that ended before it is durable
+	 */
+	private static void syncUnsyncedPaths() throws IOException {
+		Vector<String> paths;
+		synchronized (BufferPool.class) {
+			paths = new Vector<String>(unsyncedPaths);
+			unsyncedPaths.clear();
+		}
+		HashSet<File> dirs = new HashSet<File>();
+		try {
+			for (String path : paths) {
+				Lock latch = LockManager.latch(path);
+				latch.lock();
+				try {
+					File file = new File(path);
+					if (file.exists()) {
+						FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+						try {
+							channel.force(false);
+						} finally {
+							channel.close();
+						}
+					}
+					dirs.add(file.getParentFile());
+				} finally {
+					latch.unlock();
+				}
+			}
+			for (File dir : dirs) {
+				syncDirectory(dir);
+			}
+		} catch (IOException e) {
+			synchronized (BufferPool.class) {
+				unsyncedPaths.addAll(paths); // forced again by the next checkpoint
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * forces the directory so the files renamed into or deleted from it stay so
+	 * after a power failure
+	 */
+	private static void syncDirectory(File dir) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+		} catch (AccessDeniedException e) {
+			return; // directories can't be opened on some platforms, where renames are durable
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+}
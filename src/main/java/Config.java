@@ -27,4 +27,8 @@ public class Config {
 		String value = this.configFile.getProperty(key);
 		return value;
 	}
+
+	public String getProperty(String key, String defaultValue) {
+		return this.configFile.getProperty(key, defaultValue);
+	}
 }
\ No newline at end of file
@@ -1,12 +1,9 @@
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -15,19 +12,40 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.Vector;
 
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class DBApp implements DBAppInterface {
 
 	private int maximumRowsCountinPage, maximumRowsCountinBucket;
+	private int asyncThreads; // 0 for a virtual thread per operation
+	private long lockTimeout; // milliseconds to wait for a lock
 	private HashSet<String> allowedTypes;
-	private boolean firstTable = true;
+	private WriteAheadLog log;
+	private SlowQueryLog slowLog;
+	private ParallelScan scan;
 
-	private final String mainDir = "src/main/resources/";
+	private final String mainDir;
+
+	public DBApp() {
+		this("src/main/resources/");
+	}
+
+	/**
+	 * @param mainDir the directory holding the config file, the metadata and the
+	 *                data of the tables
+	 */
+	public DBApp(String mainDir) {
+		this.mainDir = mainDir.endsWith("/") ? mainDir : mainDir + "/";
+	}
 
 	/**
 	 * Initiates the DB application by loading relevant info from the config file
 	 * and initiating the supported data types
+	 * 
+	 * @throws UncheckedIOException when the write ahead log can't be opened or
+	 *                              replayed
 	 */
 	@Override
 	public void init() {
@@ -37,6 +55,27 @@ public class DBApp implements DBAppInterface {
 		maximumRowsCountinPage = Integer.parseInt(config.getProperty("MaximumRowsCountinPage"));
 		maximumRowsCountinBucket = Integer.parseInt(config.getProperty("MaximumKeysCountinIndexBucket"));
 
+		// buffer pool and log settings, commits wait for an fsync of the log unless
+		// WALFlushPolicy is set to write. Opening the log replays the transactions
+		// committed before an unclean shutdown
+		BufferPool.configure(Integer.parseInt(config.getProperty("BufferPoolSize", "1024")),
+				Long.parseLong(config.getProperty("WALMaxSize", "67108864")),
+				Long.parseLong(config.getProperty("CheckpointInterval", "30000")));
+		lockTimeout = Long.parseLong(config.getProperty("LockTimeout", "10000"));
+		scan = new ParallelScan(Integer.parseInt(config.getProperty("ScanParallelism",
+				"" + Runtime.getRuntime().availableProcessors())));
+		asyncThreads = Integer.parseInt(config.getProperty("AsyncThreads", "0"));
+		Metrics.register();
+		slowLog = new SlowQueryLog(Long.parseLong(config.getProperty("SlowOperationThreshold", "-1")),
+				mainDir + "data/slow.log");
+		try {
+			log = WriteAheadLog.open(mainDir + "data/wal.log",
+					!config.getProperty("WALFlushPolicy", "fsync").equalsIgnoreCase("write"));
+		} catch (IOException e) {
+			// without its log the engine can't commit anything
+			throw new UncheckedIOException("Couldn't open the write ahead log: " + e.getMessage(), e);
+		}
+
 		// add allowed types supported by the DB engine to hashset for validation of
 		// input
 		allowedTypes = new HashSet<String>();
@@ -46,6 +85,72 @@ public class DBApp implements DBAppInterface {
 		allowedTypes.add("java.util.Date");
 	}
 
+	/**
+	 * starts a transaction on the current thread. The operations called by the
+	 * thread until it commits or rolls back are part of the transaction, their
+	 * writes are kept in memory and logged together on commit and the tables they
+	 * write stay locked until then. Selects in the transaction see its writes
+	 * 
+	 * @throws DBAppException when the thread is already running a transaction
+	 */
+	public void beginTransaction() throws DBAppException {
+		if (Transaction.current() != null) {
+			throw new DBAppException("Can't begin a transaction as the thread is already running one");
+		}
+		Transaction.begin(log);
+	}
+
+	/**
+	 * makes the writes of the transaction of the current thread durable with a
+	 * single log flush
+	 * 
+	 * @throws DBAppException when the thread isn't running a transaction or writing
+	 *                        the log fails
+	 */
+	public void commit() throws DBAppException {
+		Transaction txn = Transaction.current();
+		if (txn == null || txn.isNested()) {
+			throw new DBAppException("Can't commit as the thread isn't running a transaction");
+		}
+		try {
+			txn.commit();
+		} catch (IOException e) {
+			throw new DBAppException(e.getMessage());
+		}
+	}
+
+	/**
+	 * drops the writes of the transaction of the current thread
+	 * 
+	 * @throws DBAppException when the thread isn't running a transaction
+	 */
+	public void rollback() throws DBAppException {
+		Transaction txn = Transaction.current();
+		if (txn == null || txn.isNested()) {
+			throw new DBAppException("Can't roll back as the thread isn't running a transaction");
+		}
+		txn.end();
+	}
+
+	/**
+	 * @return the current value of every metric of the engine by name: latencies
+	 *         of the operations on each table, page and bucket reads and writes,
+	 *         buffer pool hits, bytes serialized, the plans chosen by selects and
+	 *         the rows they examined and returned. The same values are attributes
+	 *         of the DBApp:type=Metrics MBean
+	 */
+	public TreeMap<String, Number> getMetrics() {
+		return Metrics.snapshot();
+	}
+
+	/**
+	 * @return the number of threads AsyncThreads in the config sets for the
+	 *         operations of an AsyncDBApp, 0 for a virtual thread per operation
+	 */
+	int getAsyncThreads() {
+		return asyncThreads;
+	}
+
 	/**
 	 * creates a table in the database
 	 * 
@@ -65,7 +170,10 @@ public class DBApp implements DBAppInterface {
 	@Override
 	public void createTable(String tableName, String clusteringKey, Hashtable<String, String> colNameType,
 			Hashtable<String, String> colNameMin, Hashtable<String, String> colNameMax) throws DBAppException {
+		Transaction txn = Transaction.begin(log);
 		try {
+			lockTable(tableName);
+			lockCatalog();
 
 			// if a table with the name already exists in the DB don't allow it
 			if (tableNameExists(tableName)) {
@@ -131,31 +239,316 @@ public class DBApp implements DBAppInterface {
 
 			// adds rows to the metadata file corresponding to the created table
 			updateMetaDataFile(tableName, colNameType, colNameMin, colNameMax, clusteringKey);
+			txn.commit();
 		} catch (IOException ioe) {
 			ioe.printStackTrace();
+		} finally {
+			txn.end();
 		}
 
 	}
 
 	@Override
 	public void createIndex(String tableName, String[] columnNames) throws DBAppException {
+		createGridIndex(tableName, columnNames, null);
+	}
+
+	/**
+	 * creates a covering grid index on the passed columns of the table which also
+	 * stores the values of the included columns, so queries only using those
+	 * columns never load pages
+	 * 
+	 * @param tableName           the name of the table to create the index on
+	 * @param columnNames         the columns to be indexed
+	 * @param includedColumnNames the extra columns whose values are stored in the
+	 *                            index
+	 * @throws DBAppException when the table or any of the columns doesn't exist
+	 */
+	public void createIndex(String tableName, String[] columnNames, String[] includedColumnNames)
+			throws DBAppException {
+		createGridIndex(tableName, columnNames, includedColumnNames);
+	}
+
+	/**
+	 * creates a grid index without blocking writes to the table. The table is
+	 * scanned from a snapshot while the writes going on are recorded in a side log
+	 * which is replayed once the scan is done, only then queries use the index.
+	 * Inside a transaction the index is built while holding the table lock instead
+	 */
+	private void createGridIndex(String tableName, String[] columnNames, String[] includedColumnNames)
+			throws DBAppException {
+		if (Transaction.current() != null) {
+			Transaction txn = Transaction.begin(log);
+			try {
+				lockTable(tableName);
+				lockCatalog();
+				validateIndex(tableName, columnNames, includedColumnNames);
+
+				Table table = loadTable(tableName);
+				table.createIndex(columnNames, includedColumnNames);
+
+				updateMetadataWithIndex(tableName, columnNames);
+				txn.commit();
+			} catch (ClassNotFoundException | IOException | ParseException e) {
+				e.printStackTrace();
+			} finally {
+				txn.end();
+			}
+			return;
+		}
+
+		// registers the build so the table records every write from now on
+		IndexBuild build;
+		long snapshot = -1;
+		Transaction txn = Transaction.begin(log);
 		try {
+			lockTable(tableName);
+			validateIndex(tableName, columnNames, includedColumnNames);
+
+			build = loadTable(tableName).startIndexBuild(columnNames, includedColumnNames);
+			// no one else writes the table before the build is committed, so the snapshot
+			// holds what the side log starts from
+			snapshot = BufferPool.openSnapshot();
+			txn.commit();
+		} catch (ClassNotFoundException | IOException | ParseException e) {
+			e.printStackTrace();
+			if (snapshot >= 0) {
+				BufferPool.closeSnapshot(snapshot);
+			}
+			return;
+		} finally {
+			txn.end();
+		}
+
+		try {
+			// scans the table as it was when the build started without any lock
+			TreeMap<Integer, Vector<GridIndex.Ref>> cells = null;
+			txn = Transaction.beginSnapshot(log, snapshot);
+			try {
+				cells = loadTable(tableName).scanForIndex(build.getIndex());
+			} catch (ClassNotFoundException | IOException e) {
+				e.printStackTrace();
+			} finally {
+				txn.end();
+			}
+
+			// catches up with the side log and publishes the index
+			txn = Transaction.begin(log);
+			try {
+				lockTable(tableName);
+				lockCatalog();
+
+				loadTable(tableName).completeIndexBuild(build.getId(), cells);
+				if (cells != null) {
+					updateMetadataWithIndex(tableName, columnNames);
+				}
+				txn.commit();
+			} catch (ClassNotFoundException | IOException e) {
+				e.printStackTrace();
+			} finally {
+				txn.end();
+			}
+		} finally {
+			// a build left in the table is dropped by its next write
+			build.finish();
+		}
+	}
+
+	private void validateIndex(String tableName, String[] columnNames, String[] includedColumnNames)
+			throws DBAppException, IOException {
+		if (!tableNameExists(tableName)) {
+			throw new DBAppException("Couldn't create index on table `" + tableName
+					+ "` as no table with that name exists in the DB.");
+		}
+
+		validateColNames(columnNames, tableName);
+		if (includedColumnNames != null) {
+			validateColNames(includedColumnNames, tableName);
+		}
+	}
+
+	/**
+	 * creates a hash index on the passed columns of the table, used for equality
+	 * lookups on all of them
+	 * 
+	 * @param tableName   the name of the table to create the index on
+	 * @param columnNames the columns to be hashed
+	 * @throws DBAppException when the table or any of the columns doesn't exist
+	 */
+	public void createHashIndex(String tableName, String[] columnNames) throws DBAppException {
+		createHashIndex(tableName, columnNames, new String[0]);
+	}
+
+	/**
+	 * creates a hash index on the passed columns of the table which also stores the
+	 * values of the included columns
+	 * 
+	 * @param tableName           the name of the table to create the index on
+	 * @param columnNames         the columns to be hashed
+	 * @param includedColumnNames the extra columns whose values are stored in the
+	 *                            index
+	 * @throws DBAppException when the table or any of the columns doesn't exist
+	 */
+	public void createHashIndex(String tableName, String[] columnNames, String[] includedColumnNames)
+			throws DBAppException {
+		Transaction txn = Transaction.begin(log);
+		try {
+			lockTable(tableName);
+			lockCatalog();
+
 			if (!tableNameExists(tableName)) {
-				throw new DBAppException("Couldn't complete insertion into table `" + tableName
+				throw new DBAppException("Couldn't create index on table `" + tableName
 						+ "` as no table with that name exists in the DB.");
 			}
 
 			validateColNames(columnNames, tableName);
+			validateColNames(includedColumnNames, tableName);
 
-			// loads table from memory
 			Table table = loadTable(tableName);
 
-			// creates the index for the table
-			table.createIndex(columnNames);
+			table.createHashIndex(columnNames, includedColumnNames);
 
 			updateMetadataWithIndex(tableName, columnNames);
-		} catch (ClassNotFoundException | IOException | ParseException e) {
+			txn.commit();
+		} catch (ClassNotFoundException | IOException e) {
+			e.printStackTrace();
+		} finally {
+			txn.end();
+		}
+	}
+
+	/**
+	 * creates a bitmap index on the passed columns of the table, meant for columns
+	 * with few distinct values. Selects whose terms are all on bitmap indexed
+	 * columns are answered by combining the bitmaps with the array operators
+	 * 
+	 * @param tableName   the name of the table to create the index on
+	 * @param columnNames the columns to be indexed
+	 * @throws DBAppException when the table or any of the columns doesn't exist
+	 */
+	public void createBitmapIndex(String tableName, String[] columnNames) throws DBAppException {
+		Transaction txn = Transaction.begin(log);
+		try {
+			lockTable(tableName);
+			lockCatalog();
+
+			if (!tableNameExists(tableName)) {
+				throw new DBAppException("Couldn't create index on table `" + tableName
+						+ "` as no table with that name exists in the DB.");
+			}
+
+			validateColNames(columnNames, tableName);
+
+			Table table = loadTable(tableName);
+
+			table.createBitmapIndex(columnNames);
+
+			updateMetadataWithIndex(tableName, columnNames);
+			txn.commit();
+		} catch (ClassNotFoundException | IOException e) {
+			e.printStackTrace();
+		} finally {
+			txn.end();
+		}
+	}
+
+	/**
+	 * keeps bloom filters on the clustering key and the passed columns of every
+	 * page of the table, so updates, deletes and equality selects don't load pages
+	 * that can't hold the values they look for
+	 * 
+	 * @param tableName   the name of the table
+	 * @param columnNames the columns to keep bloom filters on besides the
+	 *                    clustering key
+	 * @throws DBAppException when the table or any of the columns doesn't exist
+	 */
+	public void createBloomFilters(String tableName, String[] columnNames) throws DBAppException {
+		Transaction txn = Transaction.begin(log);
+		try {
+			lockTable(tableName);
+
+			if (!tableNameExists(tableName)) {
+				throw new DBAppException("Couldn't create bloom filters on table `" + tableName
+						+ "` as no table with that name exists in the DB.");
+			}
+
+			validateColNames(columnNames, tableName);
+
+			loadTable(tableName).createBloomFilters(columnNames);
+			txn.commit();
+		} catch (ClassNotFoundException | IOException e) {
 			e.printStackTrace();
+		} finally {
+			txn.end();
+		}
+	}
+
+	/**
+	 * scans the table and saves with it the statistics of its columns, used to
+	 * estimate the rows matching a select
+	 *
+	 * @param tableName the name of the table
+	 * @return the statistics gathered
+	 * @throws DBAppException when the table doesn't exist
+	 */
+	public TableStatistics analyze(String tableName) throws DBAppException {
+		return analyze(tableName, 1);
+	}
+
+	/**
+	 * gathers the statistics of the table from a random part of its pages, scaling
+	 * the counts up to the whole table. Inserts, updates and deletes keep the
+	 * counts current afterwards, so a table only needs analyzing again once its
+	 * values are distributed differently
+	 *
+	 * @param tableName the name of the table
+	 * @param fraction  the fraction of the pages to scan, between 0 and 1
+	 * @return the statistics gathered
+	 * @throws DBAppException when the table doesn't exist or the fraction isn't
+	 *                        valid
+	 */
+	public TableStatistics analyze(String tableName, double fraction) throws DBAppException {
+		Transaction txn = Transaction.begin(log);
+		try {
+			lockTable(tableName);
+
+			if (!tableNameExists(tableName)) {
+				throw new DBAppException(
+						"Couldn't analyze table `" + tableName + "` as no table with that name exists in the DB.");
+			}
+			if (!(fraction > 0 && fraction <= 1)) {
+				throw new DBAppException("Couldn't analyze table `" + tableName + "` as the fraction " + fraction
+						+ " isn't between 0 and 1.");
+			}
+
+			TableStatistics statistics = loadTable(tableName).analyze(fraction);
+			txn.commit();
+			return statistics;
+		} catch (ClassNotFoundException | IOException e) {
+			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
+		}
+	}
+
+	/**
+	 * @param tableName the name of the table
+	 * @return the statistics of the table kept current since it was last analyzed,
+	 *         null if it never was
+	 * @throws DBAppException when the table doesn't exist
+	 */
+	public TableStatistics getStatistics(String tableName) throws DBAppException {
+		Transaction txn = Transaction.beginSnapshot(log);
+		try {
+			if (!tableNameExists(tableName)) {
+				throw new DBAppException("Couldn't get the statistics of table `" + tableName
+						+ "` as no table with that name exists in the DB.");
+			}
+			return loadTable(tableName).getStatistics();
+		} catch (ClassNotFoundException | IOException e) {
+			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
 		}
 	}
 
@@ -170,7 +563,11 @@ public class DBApp implements DBAppInterface {
 	 */
 	@Override
 	public void insertIntoTable(String tableName, Hashtable<String, Object> colNameValue) throws DBAppException {
+		long start = System.nanoTime();
+		Transaction txn = Transaction.begin(log);
 		try {
+			lockTable(tableName);
+
 			// checks if this table exists and if not doesn't allow insertion
 			if (!tableNameExists(tableName)) {
 				throw new DBAppException("Couldn't complete insertion into table `" + tableName
@@ -186,8 +583,12 @@ public class DBApp implements DBAppInterface {
 
 			table.insertWithOF(colNameValue);
 			table = null;
+			txn.commit();
 		} catch (IOException | ClassNotFoundException | NumberFormatException | ParseException e) {
 			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
+			Metrics.recordSince("table." + tableName + ".insert", start);
 		}
 	}
 
@@ -204,7 +605,12 @@ public class DBApp implements DBAppInterface {
 	@Override
 	public void updateTable(String tableName, String clusteringKeyValue, Hashtable<String, Object> colNameValue)
 			throws DBAppException {
+		long start = System.nanoTime();
+		Transaction txn = Transaction.begin(log);
+		txn.setStats(slowLog.newStats());
 		try {
+			lockTable(tableName);
+
 			// checks if this table exists and if not doesn't allow insertion
 			if (!tableNameExists(tableName)) {
 				throw new DBAppException("Couldn't complete updating table `" + tableName
@@ -224,8 +630,15 @@ public class DBApp implements DBAppInterface {
 
 			table.updateBS(objClusteringKeyValue, colNameValue);
 			table = null;
+			txn.commit();
 		} catch (IOException | ClassNotFoundException | ParseException e) {
 			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
+			Metrics.recordSince("table." + tableName + ".update", start);
+			slowLog.record("update", tableName,
+					() -> "clustering key = " + clusteringKeyValue + " SET " + SlowQueryLog.toString(colNameValue, ", "),
+					txn.getStats(), start);
 		}
 	}
 
@@ -240,7 +653,12 @@ public class DBApp implements DBAppInterface {
 	 */
 	@Override
 	public void deleteFromTable(String tableName, Hashtable<String, Object> columnNameValue) throws DBAppException {
+		long start = System.nanoTime();
+		Transaction txn = Transaction.begin(log);
+		txn.setStats(slowLog.newStats());
 		try {
+			lockTable(tableName);
+
 			// checks if this table exists and if not doesn't allow insertion
 			if (!tableNameExists(tableName)) {
 				throw new DBAppException("Couldn't complete deletion from table `" + tableName
@@ -256,14 +674,23 @@ public class DBApp implements DBAppInterface {
 
 			table.deleteBS(columnNameValue);
 			table = null;
+			txn.commit();
 		} catch (IOException | ClassNotFoundException | NumberFormatException | ParseException e) {
 			// throw new DBAppException(e.getMessage());
 			e.printStackTrace();
+		} finally {
+			txn.end();
+			Metrics.recordSince("table." + tableName + ".delete", start);
+			slowLog.record("delete", tableName, () -> SlowQueryLog.toString(columnNameValue, " AND "),
+					txn.getStats(), start);
 		}
 	}
 
 	@Override
 	public Iterator selectFromTable(SQLTerm[] sqlTerms, String[] arrayOperators) throws DBAppException {
+		long start = System.nanoTime();
+		Transaction txn = Transaction.beginSnapshot(log);
+		txn.setStats(slowLog.newStats());
 		try {
 			String tableName = sqlTerms[0]._strTableName; // assuming that only one table could be used at an instance
 
@@ -276,13 +703,163 @@ public class DBApp implements DBAppInterface {
 		} catch (ClassNotFoundException | IOException e) {
 			// throw new DBAppException(e.getMessage());
 			e.printStackTrace();
+		} finally {
+			txn.end();
+			Metrics.recordSince("table." + sqlTerms[0]._strTableName + ".select", start);
+			slowLog.record("select", sqlTerms[0]._strTableName,
+					() -> Events.QueryExecuted.toString(sqlTerms, arrayOperators), txn.getStats(), start);
 		}
 		return null;
 	}
 
+	/**
+	 * selects only the passed columns of the tuples matching the terms, answered
+	 * from a covering index without loading pages whenever possible
+	 * 
+	 * @param sqlTerms       the terms of the select statement
+	 * @param arrayOperators the operators between the terms
+	 * @param columnNames    the columns to be returned
+	 * @return an iterator over tuples holding only the requested columns
+	 * @throws DBAppException when the table or any of the columns doesn't exist
+	 */
+	public Iterator selectFromTable(SQLTerm[] sqlTerms, String[] arrayOperators, String[] columnNames)
+			throws DBAppException {
+		return selectFromTable(sqlTerms, arrayOperators, columnNames, null, false, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * selects the first tuples matching the terms, pages are read in clustering key
+	 * order until enough are found
+	 * 
+	 * @param sqlTerms       the terms of the select statement
+	 * @param arrayOperators the operators between the terms
+	 * @param limit          the most tuples to be returned
+	 * @return an iterator over at most limit tuples
+	 * @throws DBAppException when the limit isn't positive
+	 */
+	public Iterator selectFromTable(SQLTerm[] sqlTerms, String[] arrayOperators, int limit) throws DBAppException {
+		return selectFromTable(sqlTerms, arrayOperators, null, null, false, limit);
+	}
+
+	/**
+	 * selects the top tuples matching the terms ordered by a column. Ordered by the
+	 * clustering key pages are read in key order, or backwards when descending,
+	 * until enough are found, ordered by another column the top tuples are kept in
+	 * a heap of limit of them
+	 * 
+	 * @param sqlTerms       the terms of the select statement
+	 * @param arrayOperators the operators between the terms
+	 * @param columnNames    the columns to be returned, null for whole tuples
+	 * @param orderBy        the column to order the tuples by, null for any order
+	 * @param descending     order from the largest value, nulls always come last
+	 * @param limit          the most tuples to be returned
+	 * @return an iterator over at most limit tuples in order
+	 * @throws DBAppException when the table or any of the columns doesn't exist or
+	 *                        the limit isn't positive
+	 */
+	public Iterator selectFromTable(SQLTerm[] sqlTerms, String[] arrayOperators, String[] columnNames,
+			String orderBy, boolean descending, int limit) throws DBAppException {
+		long start = System.nanoTime();
+		Transaction txn = Transaction.beginSnapshot(log);
+		txn.setStats(slowLog.newStats());
+		try {
+			String tableName = sqlTerms[0]._strTableName;
+
+			Hashtable<String, String> colNameType = getColNameType(tableName);
+			for (String col : columnNames == null ? new String[0] : columnNames) {
+				if (!colNameType.containsKey(col)) {
+					throw new DBAppException("Can't complete select from table `" + tableName + "` as column `" + col
+							+ "` doesn't exist in table.");
+				}
+			}
+			if (orderBy != null && !colNameType.containsKey(orderBy)) {
+				throw new DBAppException("Can't order select from table `" + tableName + "` by column `" + orderBy
+						+ "` as it doesn't exist in table.");
+			}
+			if (limit <= 0) {
+				throw new DBAppException("Can't complete select from table `" + tableName + "` as the limit `"
+						+ limit + "` isn't positive.");
+			}
+
+			return loadTable(tableName).select(sqlTerms, arrayOperators, columnNames, orderBy, descending, limit);
+		} catch (ClassNotFoundException | IOException e) {
+			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
+			Metrics.recordSince("table." + sqlTerms[0]._strTableName + ".select", start);
+			slowLog.record("select", sqlTerms[0]._strTableName,
+					() -> Events.QueryExecuted.toString(sqlTerms, arrayOperators), txn.getStats(), start);
+		}
+	}
+
+	/**
+	 * counts the tuples matching the terms, answered from a covering index without
+	 * loading pages whenever possible
+	 * 
+	 * @param sqlTerms       the terms of the select statement
+	 * @param arrayOperators the operators between the terms
+	 * @return the number of matching tuples
+	 * @throws DBAppException when loading the table fails
+	 */
+	public int countFromTable(SQLTerm[] sqlTerms, String[] arrayOperators) throws DBAppException {
+		long start = System.nanoTime();
+		Transaction txn = Transaction.beginSnapshot(log);
+		try {
+			return loadTable(sqlTerms[0]._strTableName).count(sqlTerms, arrayOperators);
+		} catch (ClassNotFoundException | IOException e) {
+			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
+			Metrics.recordSince("table." + sqlTerms[0]._strTableName + ".count", start);
+		}
+	}
+
+	/**
+	 * checks if any tuple matches the terms, answered from a covering index without
+	 * loading pages whenever possible
+	 * 
+	 * @param sqlTerms       the terms of the select statement
+	 * @param arrayOperators the operators between the terms
+	 * @return true if a matching tuple exists
+	 * @throws DBAppException when loading the table fails
+	 */
+	public boolean existsInTable(SQLTerm[] sqlTerms, String[] arrayOperators) throws DBAppException {
+		long start = System.nanoTime();
+		Transaction txn = Transaction.beginSnapshot(log);
+		try {
+			return loadTable(sqlTerms[0]._strTableName).exists(sqlTerms, arrayOperators);
+		} catch (ClassNotFoundException | IOException e) {
+			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
+			Metrics.recordSince("table." + sqlTerms[0]._strTableName + ".exists", start);
+		}
+	}
+
+	/**
+	 * describes how selectFromTable would answer the terms without running it: the
+	 * access path, the index used and the cells and buckets it reads, the pages
+	 * expected to be read and the terms checked on every tuple read
+	 *
+	 * @param sqlTerms       the terms of the select statement
+	 * @param arrayOperators the operators between the terms
+	 * @return the plan of the select
+	 * @throws DBAppException when loading the table fails
+	 */
+	public QueryPlan explain(SQLTerm[] sqlTerms, String[] arrayOperators) throws DBAppException {
+		Transaction txn = Transaction.beginSnapshot(log);
+		try {
+			return loadTable(sqlTerms[0]._strTableName).explain(sqlTerms, arrayOperators, null);
+		} catch (ClassNotFoundException | IOException e) {
+			throw new DBAppException(e.getMessage());
+		} finally {
+			txn.end();
+		}
+	}
+
 	private Hashtable<String, String> getColNameType(String tableName) throws IOException {
 		String line = "";
-		BufferedReader br = new BufferedReader(new FileReader(mainDir + "metadata.csv"));
+		BufferedReader br = readMetadata();
 		Hashtable<String, String> res = new Hashtable<String, String>();
 		while ((line = br.readLine()) != null) {
 			StringTokenizer st = new StringTokenizer(line, ",");
@@ -304,8 +881,7 @@ public class DBApp implements DBAppInterface {
 	 * @return true if table exists, otherwise returns false
 	 */
 	private boolean tableNameExists(String strTableName) {
-		File file = new File(mainDir + "data/" + strTableName);
-		return file.exists();
+		return BufferPool.exists(mainDir + "data/" + strTableName + "/" + strTableName + ".class");
 	}
 
 	/**
@@ -350,7 +926,7 @@ public class DBApp implements DBAppInterface {
 		Hashtable<String, String> colNameMin = new Hashtable<String, String>();
 		Hashtable<String, String> colNameMax = new Hashtable<String, String>();
 
-		BufferedReader br = new BufferedReader(new FileReader(new File(mainDir + "metadata.csv")));
+		BufferedReader br = readMetadata();
 		br.readLine();
 		String line, clusteringKey = "";
 		StringTokenizer st;
@@ -412,7 +988,7 @@ public class DBApp implements DBAppInterface {
 	public void validateColNames(String colNames[], String tableName)
 			throws DBAppException, IOException, FileNotFoundException {
 		HashSet<String> tableColumns = new HashSet<String>();
-		BufferedReader br = new BufferedReader(new FileReader(new File(mainDir + "metadata.csv")));
+		BufferedReader br = readMetadata();
 		br.readLine();
 		String line;
 		StringTokenizer st;
@@ -447,7 +1023,7 @@ public class DBApp implements DBAppInterface {
 	public Comparable validateCK(String ckValue, Hashtable<String, Object> htblColNameValue, String tableName)
 			throws DBAppException, IOException, ParseException, ClassNotFoundException {
 		// reads the metadata file to extract the clustering key type
-		BufferedReader br = new BufferedReader(new FileReader(new File(mainDir + "metadata.csv")));
+		BufferedReader br = readMetadata();
 		br.readLine();
 		String line, cn = "", ckType = "";
 		StringTokenizer st;
@@ -528,11 +1104,17 @@ public class DBApp implements DBAppInterface {
 	private void updateMetaDataFile(String strTableName, Hashtable<String, String> htblColNameType,
 			Hashtable<String, String> htblColNameMin, Hashtable<String, String> htblColNameMax,
 			String strClusteringKeyColumn) throws IOException {
-		BufferedWriter bw = new BufferedWriter(new FileWriter(mainDir + "/metadata.csv", true));
-		if (firstTable) {
-			bw.append("Table Name,Column Name,Column Type,ClusteringKey,Indexed,min,max\n");
-			firstTable = false;
+		StringBuilder sb = new StringBuilder();
+		BufferedReader br = readMetadata();
+		String line = br.readLine();
+		if (line == null) {
+			sb.append("Table Name,Column Name,Column Type,ClusteringKey,Indexed,min,max\n");
+		}
+		while (line != null) {
+			sb.append(line).append("\n");
+			line = br.readLine();
 		}
+		br.close();
 		for (Entry<String, String> entry : htblColNameType.entrySet()) {
 			String colName = entry.getKey();
 			String colType = entry.getValue();
@@ -540,15 +1122,14 @@ public class DBApp implements DBAppInterface {
 			boolean indexed = false;
 			String min = htblColNameMin.get(colName);
 			String max = htblColNameMax.get(colName);
-			String line = strTableName + "," + colName + "," + colType + "," + isClustering + "," + indexed + "," + min
-					+ "," + max + "\n";
-			bw.append(line);
+			sb.append(strTableName + "," + colName + "," + colType + "," + isClustering + "," + indexed + "," + min
+					+ "," + max + "\n");
 		}
-		bw.close();
+		BufferPool.writeBytes(mainDir + "metadata.csv", sb.toString().getBytes());
 	}
 
 	private void updateMetadataWithIndex(String tableName, String colNames[]) throws IOException {
-		BufferedReader br = new BufferedReader(new FileReader(new File(mainDir + "metadata.csv")));
+		BufferedReader br = readMetadata();
 		HashSet<String> hs = new HashSet<String>();
 		for (String s : colNames)
 			hs.add(s);
@@ -566,18 +1147,29 @@ public class DBApp implements DBAppInterface {
 			String min = st.nextToken();
 			String max = st.nextToken();
 			if (tn.equals(tableName)) {
-				sb.append(String.format("%s,%s,%s,%s,%s,%s,%s\n", tn, cn, ct, isCK, hs.contains(cn) ? "true" : "false",
-						min, max));
+				sb.append(String.format("%s,%s,%s,%s,%s,%s,%s\n", tn, cn, ct, isCK,
+						hs.contains(cn) || isIdxed ? "true" : "false", min, max));
 			} else {
 				sb.append(String.format("%s,%s,%s,%s,%s,%s,%s\n", tn, cn, ct, isCK, isIdxed, min, max));
 			}
 		}
 		br.close();
 
-		BufferedWriter bw = new BufferedWriter(new FileWriter(mainDir + "/metadata.csv", false));
-		bw.append("Table Name,Column Name,Column Type,ClusteringKey,Indexed,min,max\n");
-		bw.write(sb.toString());
-		bw.close();
+		BufferPool.writeBytes(mainDir + "metadata.csv",
+				("Table Name,Column Name,Column Type,ClusteringKey,Indexed,min,max\n" + sb).getBytes());
+	}
+
+	/**
+	 * @return a reader over the metadata file as seen by the current transaction,
+	 *         empty if the file doesn't exist yet
+	 * @throws IOException when reading the file fails
+	 */
+	private BufferedReader readMetadata() throws IOException {
+		byte data[] = new byte[0];
+		if (BufferPool.exists(mainDir + "metadata.csv")) {
+			data = BufferPool.readBytes(mainDir + "metadata.csv");
+		}
+		return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data)));
 	}
 
 	public void printTable(String tableName) throws IOException, ClassNotFoundException {
@@ -588,11 +1180,23 @@ public class DBApp implements DBAppInterface {
 		loadTable(tableName).printIndex(idxId);
 	}
 
+	/**
+	 * locks the table for writing until the current transaction ends
+	 */
+	private void lockTable(String strTableName) throws DBAppException {
+		LockManager.lockExclusive(mainDir + "data/" + strTableName, lockTimeout);
+	}
+
+	/**
+	 * locks the metadata file for changes until the current transaction ends
+	 */
+	private void lockCatalog() throws DBAppException {
+		LockManager.lockCatalog(mainDir + "metadata.csv", lockTimeout);
+	}
+
 	private Table loadTable(String strTableName) throws ClassNotFoundException, IOException {
-		ObjectInputStream ois = new ObjectInputStream(
-				new FileInputStream(mainDir + "data/" + strTableName + "/" + strTableName + ".class"));
-		Table res = (Table) ois.readObject();
-		ois.close();
-		return res;
+		Table table = (Table) BufferPool.read(mainDir + "data/" + strTableName + "/" + strTableName + ".class");
+		table.setScan(scan);
+		return table;
 	}
 }
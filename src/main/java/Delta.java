@@ -0,0 +1,120 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The difference between two images of a file as the ranges copied from the old
+ * image and the bytes added in between. Serialized tables change in a few places
+ * on every write, shifting what follows, so ranges of the new image are looked up
+ * anywhere in the old one by the hash of their first bytes
+ */
+public class Delta {
+
+	private static final int BLOCK = 16; // the shortest range copied
+	private static final byte COPY = 0, ADD = 1;
+
+	private Delta() {
+	}
+
+	/**
+	 * @param base  the old image
+	 * @param image the new image
+	 * @return the delta turning the old image into the new one
+	 */
+	public static byte[] encode(byte base[], byte image[]) throws IOException {
+		// the offsets of the blocks of the old image by hash, open addressing
+		int slots = Integer.highestOneBit(Math.max(base.length / BLOCK, 1) * 2) * 2;
+		int table[] = new int[slots];
+		Arrays.fill(table, -1);
+		for (int off = 0; off + BLOCK <= base.length; off += BLOCK) {
+			int slot = hash(base, off) & (slots - 1);
+			while (table[slot] >= 0
+					&& !Arrays.equals(base, table[slot], table[slot] + BLOCK, base, off, off + BLOCK)) {
+				slot = (slot + 1) & (slots - 1);
+			}
+			if (table[slot] < 0) { // repeated blocks are copied from their first occurrence
+				table[slot] = off;
+			}
+		}
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(bos);
+		dos.writeInt(image.length);
+		int pos = 0, added = 0; // image[added, pos) is waiting to be added
+		while (pos + BLOCK <= image.length) {
+			int match = -1;
+			for (int slot = hash(image, pos) & (slots - 1); table[slot] >= 0; slot = (slot + 1) & (slots - 1)) {
+				if (Arrays.equals(base, table[slot], table[slot] + BLOCK, image, pos, pos + BLOCK)) {
+					match = table[slot];
+					break;
+				}
+			}
+			if (match < 0) {
+				pos++;
+				continue;
+			}
+
+			// the range grows both ways as long as the images agree
+			int from = match, to = pos;
+			while (from > 0 && to > added && base[from - 1] == image[to - 1]) {
+				from--;
+				to--;
+			}
+			int length = pos - to + BLOCK, most = Math.min(base.length - from, image.length - to);
+			int mismatch = Arrays.mismatch(base, from + length, from + most, image, to + length, to + most);
+			length = mismatch < 0 ? most : length + mismatch;
+			add(dos, image, added, to);
+			dos.writeByte(COPY);
+			dos.writeInt(from);
+			dos.writeInt(length);
+			pos = added = to + length;
+		}
+		add(dos, image, added, image.length);
+		dos.close();
+		return bos.toByteArray();
+	}
+
+	/**
+	 * @param base  the old image
+	 * @param delta the delta encoded against it
+	 * @return the new image
+	 */
+	public static byte[] apply(byte base[], byte delta[]) throws IOException {
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(delta));
+		byte image[] = new byte[dis.readInt()];
+		int pos = 0;
+		while (pos < image.length) {
+			byte op = dis.readByte();
+			if (op == COPY) {
+				int from = dis.readInt(), length = dis.readInt();
+				System.arraycopy(base, from, image, pos, length);
+				pos += length;
+			} else {
+				int length = dis.readInt();
+				dis.readFully(image, pos, length);
+				pos += length;
+			}
+		}
+		return image;
+	}
+
+	private static void add(DataOutputStream dos, byte image[], int from, int to) throws IOException {
+		if (to > from) {
+			dos.writeByte(ADD);
+			dos.writeInt(to - from);
+			dos.write(image, from, to - from);
+		}
+	}
+
+	private static int hash(byte data[], int off) {
+		int h = 0x811C9DC5; // FNV-1a, serialized images are full of blocks differing in a byte or two
+		for (int i = off; i < off + BLOCK; ++i) {
+			h = (h ^ data[i]) * 0x01000193;
+		}
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 15);
+	}
+}
@@ -0,0 +1,164 @@
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder events of the engine. They take no stack traces and the I/O
+ * and index events are only recorded past a threshold of 1 ms, lowered in the
+ * recording settings when every one is needed, so they can stay enabled. Fields
+ * costing more than a read to fill are only filled for events being recorded
+ */
+final class Events {
+
+	private Events() {
+	}
+
+	/**
+	 * a page or bucket file read or written through the buffer pool, timed around
+	 * its serialization
+	 */
+	@Category({ "DBApp", "Storage" })
+	@StackTrace(false)
+	@Threshold("1 ms")
+	abstract static class FileEvent extends Event {
+		@Label("Path")
+		String path;
+
+		@Label("Entries")
+		@Description("Tuples of a page or references of a bucket")
+		int entries;
+
+		void end(String path, int entries) {
+			end();
+			if (shouldCommit()) {
+				this.path = path;
+				this.entries = entries;
+				commit();
+			}
+		}
+	}
+
+	@Name("dbapp.PageRead")
+	@Label("Page Read")
+	@Description("A page loaded from the buffer pool and deserialized")
+	static class PageRead extends FileEvent {
+	}
+
+	@Name("dbapp.PageWrite")
+	@Label("Page Write")
+	@Description("A page serialized and written to the buffer pool")
+	static class PageWrite extends FileEvent {
+	}
+
+	@Name("dbapp.BucketRead")
+	@Label("Bucket Read")
+	@Description("An index bucket loaded from the buffer pool and deserialized")
+	static class BucketRead extends FileEvent {
+	}
+
+	@Name("dbapp.BucketWrite")
+	@Label("Bucket Write")
+	@Description("An index bucket serialized and written to the buffer pool, as when references move")
+	static class BucketWrite extends FileEvent {
+	}
+
+	@Name("dbapp.IndexProbe")
+	@Label("Index Probe")
+	@Category({ "DBApp", "Query" })
+	@Description("The references to the tuples matching a query looked up in an index")
+	@StackTrace(false)
+	@Threshold("1 ms")
+	static class IndexProbe extends Event {
+		@Label("Table")
+		String table;
+
+		@Label("Index")
+		String index;
+
+		@Label("Pages")
+		int pages;
+
+		@Label("References")
+		int references;
+
+		private transient Index idx;
+
+		static IndexProbe start(String table, Index idx) {
+			IndexProbe event = new IndexProbe();
+			event.table = table;
+			event.idx = idx;
+			event.begin();
+			return event;
+		}
+
+		void end(TreeMap<String, LinkedList<Integer>> pageNameRows) {
+			end();
+			if (shouldCommit()) {
+				int refs = 0;
+				for (LinkedList<Integer> rows : pageNameRows.values()) {
+					refs += rows.size();
+				}
+				commit(pageNameRows.size(), refs);
+			}
+		}
+
+		void end(int entries) {
+			end();
+			if (shouldCommit()) {
+				commit(0, entries);
+			}
+		}
+
+		private void commit(int pages, int references) {
+			this.pages = pages;
+			this.references = references;
+			this.index = idx.getClass().getName() + " on " + idx.getColumns();
+			commit();
+		}
+	}
+
+	@Name("dbapp.QueryExecuted")
+	@Label("Query Executed")
+	@Category({ "DBApp", "Query" })
+	@Description("A select, or a count or exists not answered from bitmap indices alone")
+	@StackTrace(false)
+	static class QueryExecuted extends Event {
+		@Label("Table")
+		String table;
+
+		@Label("Query")
+		String query;
+
+		@Label("Access Path")
+		@Description("bitmap, coveringIndex, index, indexIntersection, clusteringKey or scan")
+		String accessPath;
+
+		@Label("Rows Examined")
+		long rowsExamined;
+
+		@Label("Rows Returned")
+		long rowsReturned;
+
+		/**
+		 * @return the terms and operators as a where clause
+		 */
+		static String toString(SQLTerm sqlTerms[], String ops[]) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < sqlTerms.length; ++i) {
+				if (i > 0) {
+					sb.append(' ').append(ops[i - 1].toUpperCase()).append(' ');
+				}
+				sb.append(sqlTerms[i]._strColumnName).append(' ').append(sqlTerms[i]._strOperator).append(' ')
+						.append(sqlTerms[i]._objValue);
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -1,7 +1,4 @@
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -15,7 +12,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.Vector;
 
-public class GridIndex implements Serializable {
+public class GridIndex implements Index {
 
 	class MinMax implements Serializable {
 
@@ -43,26 +40,63 @@ public class GridIndex implements Serializable {
 		}
 	}
 
+	/**
+	 * a reference to a tuple waiting to be put in a bucket while the index is built,
+	 * together with all the values of the tuple
+	 */
+	static class Ref {
+		String pageName;
+		int row;
+		Hashtable<String, Object> values;
+
+		Ref(String pageName, int row, Hashtable<String, Object> values) {
+			this.pageName = pageName;
+			this.row = row;
+			this.values = values;
+		}
+	}
+
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
 	private Vector<String>[] grid;
-	private Hashtable<String, MinMax[]> colNameRanges;
+	private TreeMap<String, MinMax[]> colNameRanges; // sorted so the cell layout survives serialization
 	private int bucketIdx = 0, maxBucketSize, indexId;
 	private String path;
+	private Vector<String> storedColumns; // columns whose values are kept in the buckets, null if not covering
 
-	// missing support for String and Double columns
-	// missing support for null values
 	public GridIndex(String[] strarrColName, Hashtable<String, String> colNameType, Hashtable<String, String> minValues,
 			Hashtable<String, String> maxValues, int maxBucketSize, int indexId, String path)
 			throws DBAppException, ParseException {
+		this(strarrColName, null, colNameType, minValues, maxValues, maxBucketSize, indexId, path);
+	}
+
+	/**
+	 * creates a grid index, if included columns are passed then the index is a
+	 * covering one storing the values of the indexed and included columns in its
+	 * buckets so queries on them are answered without loading pages
+	 */
+	// missing support for String and Double columns
+	// missing support for null values
+	public GridIndex(String[] strarrColName, String[] strarrIncludedColName, Hashtable<String, String> colNameType,
+			Hashtable<String, String> minValues, Hashtable<String, String> maxValues, int maxBucketSize, int indexId,
+			String path) throws DBAppException, ParseException {
 
 		this.maxBucketSize = maxBucketSize;
 		this.indexId = indexId;
 		this.path = path;
 
-		colNameRanges = new Hashtable<String, MinMax[]>();
+		if (strarrIncludedColName != null) {
+			storedColumns = new Vector<String>(Arrays.asList(strarrColName));
+			for (String colName : strarrIncludedColName) {
+				if (!storedColumns.contains(colName)) {
+					storedColumns.add(colName);
+				}
+			}
+		}
+
+		colNameRanges = new TreeMap<String, MinMax[]>();
 
 		int cols = 10; // number of columns in array
 		for (int i = 0; i < strarrColName.length; ++i) { // loop on each column
@@ -169,11 +203,12 @@ public class GridIndex implements Serializable {
 			throws ClassNotFoundException, IOException {
 
 		int oneDIdx = get1DIdx(htblColNameValue);
+		Hashtable<String, Object> values = getStoredValues(htblColNameValue);
 
 		if (grid[oneDIdx].isEmpty()) {
 			Bucket bucket = createBucket();
 			grid[oneDIdx].add(bucket.getPath());
-			bucket.insert(pageName, row);
+			bucket.insert(pageName, row, values);
 		} else {
 
 			boolean inserted = false;
@@ -181,7 +216,7 @@ public class GridIndex implements Serializable {
 			for (String bucketName : grid[oneDIdx]) {
 				Bucket b = loadBucket(bucketName);
 				if (!b.isFull()) {
-					b.insert(pageName, row);
+					b.insert(pageName, row, values);
 					inserted = true;
 					break;
 				}
@@ -190,11 +225,79 @@ public class GridIndex implements Serializable {
 			if (!inserted) {
 				Bucket bucket = createBucket();
 				grid[oneDIdx].add(bucket.getPath());
-				bucket.insert(pageName, row);
+				bucket.insert(pageName, row, values);
+			}
+		}
+	}
+
+	/**
+	 * groups the references to the tuples of a page by the cell they fall in
+	 * without touching any bucket, safe to call from several threads at once
+	 *
+	 * @param pageName the name of the page
+	 * @param page     the page holding the tuples
+	 * @return the cells mapped to the references of the page falling in them in row
+	 *         order
+	 */
+	TreeMap<Integer, Vector<Ref>> group(String pageName, Page page) {
+		TreeMap<Integer, Vector<Ref>> cells = new TreeMap<Integer, Vector<Ref>>();
+		int row = 0;
+		for (Tuple t : page.getTuples()) {
+			cells.computeIfAbsent(get1DIdx(t.getValues()), k -> new Vector<Ref>())
+					.add(new Ref(pageName, row++, t.getValues()));
+		}
+		return cells;
+	}
+
+	/**
+	 * @param pageGroups the references of each page as returned by group, in page
+	 *                   order
+	 * @return the cells mapped to the references of every page falling in them
+	 */
+	static TreeMap<Integer, Vector<Ref>> merge(Vector<TreeMap<Integer, Vector<Ref>>> pageGroups) {
+		TreeMap<Integer, Vector<Ref>> cells = new TreeMap<Integer, Vector<Ref>>();
+		for (TreeMap<Integer, Vector<Ref>> pageGroup : pageGroups) {
+			for (Entry<Integer, Vector<Ref>> e : pageGroup.entrySet()) {
+				cells.computeIfAbsent(e.getKey(), k -> new Vector<Ref>()).addAll(e.getValue());
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * fills the cells of an empty index with the grouped references, each bucket is
+	 * filled up completely and saved once
+	 *
+	 * @param cells the cells mapped to the references falling in them
+	 * @throws IOException when saving a bucket fails
+	 */
+	void load(TreeMap<Integer, Vector<Ref>> cells) throws IOException {
+		for (Entry<Integer, Vector<Ref>> e : cells.entrySet()) {
+			Bucket bucket = null;
+			for (Ref ref : e.getValue()) {
+				if (bucket == null || bucket.isFull()) {
+					if (bucket != null) {
+						bucket.save();
+					}
+					bucket = createBucket();
+					grid[e.getKey()].add(bucket.getPath());
+				}
+				bucket.addRef(ref.pageName, ref.row, getStoredValues(ref.values));
+			}
+			if (bucket != null) {
+				bucket.save();
 			}
 		}
 	}
 
+	/**
+	 * @param htblColNameValue the values of a tuple
+	 * @return the cell the tuple falls in
+	 */
+	int getCell(Hashtable<String, Object> htblColNameValue) {
+		return get1DIdx(htblColNameValue);
+	}
+
 	public void remove(Hashtable<String, Object> htblColNameValue) throws ClassNotFoundException, IOException {
 		int oneDIdx = get1DIdx(htblColNameValue);
 		for (String bucketName : grid[oneDIdx]) {
@@ -293,13 +396,90 @@ public class GridIndex implements Serializable {
 			throws ClassNotFoundException, IOException {
 		TreeMap<String, LinkedList<Integer>> trmpPageNameRows = new TreeMap<String, LinkedList<Integer>>();
 
+		for (int i : getCells(sqlTerms, ops)) {
+			for (String bucketName : grid[i]) {
+				Bucket b = loadBucket(bucketName);
+				for (Bucket.Pair pair : b.getRefs()) {
+					if (!trmpPageNameRows.containsKey(pair.getPageName())) {
+						trmpPageNameRows.put(pair.getPageName(), new LinkedList<Integer>());
+					}
+					trmpPageNameRows.get(pair.getPageName()).add(pair.getRowNumber());
+				}
+			}
+		}
+
+		return trmpPageNameRows;
+	}
+
+	public Vector<Bucket.Pair> getEntries(SQLTerm sqlTerms[], String ops[]) throws ClassNotFoundException, IOException {
+		Vector<Bucket.Pair> entries = new Vector<Bucket.Pair>();
+		for (int i : getCells(sqlTerms, ops)) {
+			for (String bucketName : grid[i]) {
+				entries.addAll(loadBucket(bucketName).getRefs());
+			}
+		}
+		return entries;
+	}
+
+	public boolean covers(Set<String> colNames) {
+		return storedColumns != null && storedColumns.containsAll(colNames);
+	}
+
+	public void explain(SQLTerm sqlTerms[], String ops[], QueryPlan plan) {
+		int buckets = 0, references = 0;
+		LinkedList<Integer> cells = getCells(sqlTerms, ops);
+		for (int i : cells) {
+			buckets += grid[i].size();
+			// buckets are filled in turn so only the last one of a cell isn't full
+			references += grid[i].isEmpty() ? 0 : grid[i].size() * maxBucketSize - maxBucketSize / 2;
+		}
+		plan.setIndex("GridIndex " + indexId + " on " + getColumns(), cells.size(), grid.length, buckets, references);
+		for (SQLTerm sqlTerm : sqlTerms) {
+			if (!narrows(sqlTerm)) {
+				plan.addResidualPredicate(sqlTerm);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the term limits the cells its tuples can be in
+	 */
+	private boolean narrows(SQLTerm sqlTerm) {
+		return colNameRanges.containsKey(sqlTerm._strColumnName) && !sqlTerm._strOperator.equals("!=");
+	}
+
+	/**
+	 * @return true if the terms are all joined by AND
+	 */
+	private static boolean conjunctive(String ops[]) {
+		for (String op : ops) {
+			if (!op.equalsIgnoreCase("and")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * a tuple matching terms joined by AND is in the cells every narrowing term
+	 * allows. Otherwise it matches at least one of the terms, so it is in the cells
+	 * any term allows, which are all cells if some term doesn't narrow them
+	 *
+	 * @param sqlTerms the terms of the select statement
+	 * @param ops      the operators between the terms
+	 * @return the cells that may hold tuples matching the terms
+	 */
+	private LinkedList<Integer> getCells(SQLTerm sqlTerms[], String ops[]) {
+		LinkedList<Integer> cells = new LinkedList<Integer>();
+		boolean and = conjunctive(ops);
+
 		int idxs[] = new int[sqlTerms.length];
 		Arrays.fill(idxs, -1);
 		int j = 0;
 		for (SQLTerm sqlTerm : sqlTerms) {
 			Comparable value = (Comparable) sqlTerm._objValue;
 
-			if (colNameRanges.containsKey(sqlTerm._strColumnName)) {
+			if (narrows(sqlTerm)) {
 				MinMax range[] = colNameRanges.get(sqlTerm._strColumnName);
 				for (int i = 0; i < range.length - 1; ++i) {
 					if (value instanceof java.lang.String) {
@@ -310,12 +490,16 @@ public class GridIndex implements Serializable {
 							&& value.compareTo((Comparable) range[i].getMax()) < 0)
 							|| (i == range.length - 2 && value.compareTo((Comparable) range[i].getMin()) >= 0
 									&& value.compareTo((Comparable) range[i].getMax()) <= 0)) {
-						// htblSqlTermIndex.put(sqlTerm, i);
 						idxs[j] = i;
 						break;
 					}
 				}
 			}
+			if (idxs[j] == -1 && !and) {
+				and = true; // no term left to narrow down an AND, so every cell is kept
+				Arrays.fill(idxs, -1);
+				break;
+			}
 			++j;
 		}
 
@@ -328,43 +512,32 @@ public class GridIndex implements Serializable {
 				res /= e.getValue().length;
 			}
 
-			// System.out.println(Arrays.toString(idxs));
-			boolean flag = false;
+			boolean flag = and;
 			for (int k = 0; k < idxs.length; ++k) {
 				if (idxs[k] != -1) {
+					boolean in;
 					switch (sqlTerms[k]._strOperator) {
 						case "=":
-							flag |= idxs[k] == map.get(sqlTerms[k]._strColumnName);
+							in = idxs[k] == map.get(sqlTerms[k]._strColumnName);
 							break;
 						case ">":
 						case ">=":
-							flag |= map.get(sqlTerms[k]._strColumnName) >= idxs[k];
-							break;
-						case "<":
-						case "<=":
-							flag |= map.get(sqlTerms[k]._strColumnName) <= idxs[k];
+							in = map.get(sqlTerms[k]._strColumnName) >= idxs[k];
 							break;
-						default:
+						default: // < and <=
+							in = map.get(sqlTerms[k]._strColumnName) <= idxs[k];
 							break;
 					}
+					flag = and ? flag && in : flag || in;
 				}
 			}
 
 			if (flag) {
-				// System.out.println(i);
-				for (String bucketName : grid[i]) {
-					Bucket b = loadBucket(bucketName);
-					for (Bucket.Pair pair : b.getRefs()) {
-						if (!trmpPageNameRows.containsKey(pair.getPageName())) {
-							trmpPageNameRows.put(pair.getPageName(), new LinkedList<Integer>());
-						}
-						trmpPageNameRows.get(pair.getPageName()).add(pair.getRowNumber());
-					}
-				}
+				cells.add(i);
 			}
 		}
 
-		return trmpPageNameRows;
+		return cells;
 	}
 
 	private int get1DIdx(Hashtable<String, Object> htblColNameValue) {
@@ -408,22 +581,53 @@ public class GridIndex implements Serializable {
 		return oneDIdx;
 	}
 
+	/**
+	 * @return the values to be kept with the reference, null if the index is not
+	 *         covering
+	 */
+	private Hashtable<String, Object> getStoredValues(Hashtable<String, Object> htblColNameValue) {
+		if (storedColumns == null) {
+			return null;
+		}
+		Hashtable<String, Object> values = new Hashtable<String, Object>();
+		for (String colName : storedColumns) {
+			if (htblColNameValue.get(colName) != null) {
+				values.put(colName, htblColNameValue.get(colName));
+			}
+		}
+		return values;
+	}
+
 	private Bucket createBucket() throws IOException {
 		// bucket path: path_to_table_folder/index_[index-id]_[bucket-id].class
 		return new Bucket(path, indexId, bucketIdx++, maxBucketSize);
 	}
 
 	private Bucket loadBucket(String path) throws IOException, ClassNotFoundException {
-		ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path));
-		Bucket res = (Bucket) ois.readObject();
-		ois.close();
-		return res;
+		Events.BucketRead event = new Events.BucketRead();
+		event.begin();
+		Bucket bucket = (Bucket) BufferPool.read(path);
+		event.end(path, bucket.getRefs().size());
+		return bucket;
 	}
 
-	private void deleteBucket(int idx, String bucketName) {
+	private void deleteBucket(int idx, String bucketName) throws IOException {
 		grid[idx].remove(bucketName);
-		File file = new File(bucketName);
-		file.delete();
+		BufferPool.delete(bucketName);
+	}
+
+	public int getScore(SQLTerm sqlTerms[], String ops[]) {
+		// with OR or XOR a term the index doesn't narrow lets tuples in any cell match
+		boolean and = conjunctive(ops);
+		int score = 0;
+		for (SQLTerm sqlTerm : sqlTerms) {
+			if (narrows(sqlTerm)) {
+				score++;
+			} else if (!and) {
+				return 0;
+			}
+		}
+		return score;
 	}
 
 	public boolean isOnColumn(String colName) {
@@ -435,7 +639,8 @@ public class GridIndex implements Serializable {
 	}
 
 	public String toString() {
-		StringBuilder sb = new StringBuilder(path + " GRID\n");
+		StringBuilder sb = new StringBuilder(
+				path + " GRID" + (storedColumns != null ? " COVERING " + storedColumns : "") + "\n");
 		for (Entry<String, MinMax[]> e : colNameRanges.entrySet()) {
 			sb.append(e.getKey()).append(" ").append(Arrays.deepToString(e.getValue())).append("\n");
 		}
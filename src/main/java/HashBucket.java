@@ -0,0 +1,41 @@
+import java.io.IOException;
+
+/**
+ * A bucket of a hash index. Besides the references it keeps the local depth used
+ * by extendible hashing and the name of its overflow bucket, used when all its
+ * references share the same hash and so can't be split apart
+ */
+public class HashBucket extends Bucket {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+	private int localDepth;
+	private String next;
+
+	public HashBucket(String path, int indexId, int bucketId, int maxSize, int localDepth) throws IOException {
+		super(path, indexId, bucketId, maxSize);
+		this.localDepth = localDepth;
+	}
+
+	public int getLocalDepth() {
+		return localDepth;
+	}
+
+	public void setLocalDepth(int localDepth) {
+		this.localDepth = localDepth;
+	}
+
+	public String getNext() {
+		return next;
+	}
+
+	public void setNext(String next) {
+		this.next = next;
+	}
+
+	public String toString() {
+		return "depth " + localDepth + " " + super.toString() + (next != null ? " -> " + next : "");
+	}
+}
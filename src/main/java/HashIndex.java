@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Vector;
+
+/**
+ * An extendible hashing index for equality lookups on one or more columns. The
+ * directory of bucket names is kept in memory (and saved with the table) while
+ * the buckets themselves are saved on disk, so an equality lookup only loads the
+ * bucket (chain) its key hashes to and then the pages holding matching rows
+ */
+public class HashIndex implements Index {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+	private static final int MAX_DEPTH = 12; // caps the directory at 4096 entries, afterwards buckets overflow
+	private Vector<String> columns, storedColumns;
+	private Vector<String> directory;
+	private int globalDepth = 0, bucketIdx = 0, maxBucketSize, indexId;
+	private String path;
+
+	public HashIndex(String[] strarrColName, int maxBucketSize, int indexId, String path) throws IOException {
+		this(strarrColName, new String[0], maxBucketSize, indexId, path);
+	}
+
+	/**
+	 * creates a hash index which also keeps the values of the included columns in
+	 * its buckets, making it covering for queries on the hashed and included
+	 * columns
+	 */
+	public HashIndex(String[] strarrColName, String[] strarrIncludedColName, int maxBucketSize, int indexId,
+			String path) throws IOException {
+		this.maxBucketSize = maxBucketSize;
+		this.indexId = indexId;
+		this.path = path;
+
+		columns = new Vector<String>();
+		for (String colName : strarrColName) {
+			columns.add(colName);
+		}
+		storedColumns = new Vector<String>(columns);
+		for (String colName : strarrIncludedColName) {
+			if (!storedColumns.contains(colName)) {
+				storedColumns.add(colName);
+			}
+		}
+
+		// starts with a single bucket which all keys hash to
+		directory = new Vector<String>();
+		HashBucket bucket = createBucket(0);
+		bucket.save();
+		directory.add(bucket.getPath());
+	}
+
+	public void insert(Hashtable<String, Object> htblColNameValue, String pageName, int row)
+			throws ClassNotFoundException, IOException {
+		Hashtable<String, Object> key = getKey(htblColNameValue);
+		int hash = hash(key);
+
+		while (true) {
+			HashBucket bucket = loadBucket(directory.get(getSlot(hash)));
+
+			// split full buckets as long as splitting can separate the references in them,
+			// then retry as the key may now belong to the new bucket
+			if (bucket.isFull() && bucket.getLocalDepth() < MAX_DEPTH && canSplit(bucket, hash)) {
+				split(bucket);
+				continue;
+			}
+
+			insertIntoChain(bucket, pageName, row, getStoredValues(htblColNameValue));
+			return;
+		}
+	}
+
+	public void remove(Hashtable<String, Object> htblColNameValue) throws ClassNotFoundException, IOException {
+		int hash = hash(getKey(htblColNameValue));
+		String bucketName = directory.get(getSlot(hash));
+		while (bucketName != null) {
+			HashBucket bucket = loadBucket(bucketName);
+			if (bucket.remove(htblColNameValue)) {
+				return;
+			}
+			bucketName = bucket.getNext();
+		}
+	}
+
+	public void increment(String pageName, int idx, String ofPage, int maxPageSize)
+			throws ClassNotFoundException, IOException, DBAppException {
+		for (String bucketName : getAllBuckets()) {
+			loadBucket(bucketName).increment(pageName, idx, ofPage, maxPageSize);
+		}
+	}
+
+	public void delete(TreeMap<String, LinkedList<Integer>> deletedPageNameRows)
+			throws ClassNotFoundException, IOException {
+		for (String primaryName : new LinkedHashSet<String>(directory)) {
+			HashBucket prev = loadBucket(primaryName);
+			prev.delete(deletedPageNameRows);
+
+			// overflow buckets that become empty are unlinked from the chain
+			String bucketName = prev.getNext();
+			while (bucketName != null) {
+				HashBucket bucket = loadBucket(bucketName);
+				bucket.delete(deletedPageNameRows);
+				if (bucket.isEmpty()) {
+					prev.setNext(bucket.getNext());
+					prev.save();
+					BufferPool.delete(bucketName);
+				} else {
+					prev = bucket;
+				}
+				bucketName = prev.getNext();
+			}
+		}
+	}
+
+	public TreeMap<String, LinkedList<Integer>> get(Hashtable<String, Object> htblColNameValue)
+			throws ClassNotFoundException, IOException {
+		TreeMap<String, LinkedList<Integer>> pageNameRows = new TreeMap<String, LinkedList<Integer>>();
+		for (Bucket.Pair pair : getEntries(htblColNameValue)) {
+			if (!pageNameRows.containsKey(pair.getPageName())) {
+				pageNameRows.put(pair.getPageName(), new LinkedList<Integer>());
+			}
+			pageNameRows.get(pair.getPageName()).add(pair.getRowNumber());
+		}
+		return pageNameRows;
+	}
+
+	public TreeMap<String, LinkedList<Integer>> select(SQLTerm sqlTerms[], String ops[])
+			throws ClassNotFoundException, IOException {
+		return get(getCriteria(sqlTerms, ops));
+	}
+
+	public Vector<Bucket.Pair> getEntries(SQLTerm sqlTerms[], String ops[]) throws ClassNotFoundException, IOException {
+		return getEntries(getCriteria(sqlTerms, ops));
+	}
+
+	public boolean covers(Set<String> colNames) {
+		return storedColumns.containsAll(colNames);
+	}
+
+	public void explain(SQLTerm sqlTerms[], String ops[], QueryPlan plan) {
+		Hashtable<String, Object> criteria = getCriteria(sqlTerms, ops);
+		String name = "HashIndex " + indexId + " on " + columns;
+		// buckets are taken as half full, the overflow buckets of a chain are only known
+		// once loaded
+		if (criteria.keySet().containsAll(columns)) {
+			plan.setIndex(name, 1, directory.size(), 1, maxBucketSize / 2);
+		} else {
+			int buckets = new HashSet<String>(directory).size();
+			plan.setIndex(name, directory.size(), directory.size(), buckets, buckets * maxBucketSize / 2);
+		}
+		for (SQLTerm sqlTerm : sqlTerms) {
+			if (!sqlTerm._strOperator.equals("=") || !sqlTerm._objValue.equals(criteria.get(sqlTerm._strColumnName))) {
+				plan.addResidualPredicate(sqlTerm);
+			}
+		}
+	}
+
+	public int getScore(SQLTerm sqlTerms[], String ops[]) {
+		// an OR/XOR lets rows outside the hashed key match, so the index can't be used
+		for (String op : ops) {
+			if (!op.equalsIgnoreCase("and")) {
+				return 0;
+			}
+		}
+
+		// every hashed column needs an equality term to compute the key
+		for (String colName : columns) {
+			boolean found = false;
+			for (SQLTerm sqlTerm : sqlTerms) {
+				found |= sqlTerm._strOperator.equals("=") && sqlTerm._strColumnName.equals(colName);
+			}
+			if (!found) {
+				return 0;
+			}
+		}
+
+		// a single bucket chain with exact keys beats a grid index over the same
+		// columns
+		return columns.size() + 1;
+	}
+
+	public boolean isOnColumn(String colName) {
+		return columns.contains(colName);
+	}
+
+	public Set<String> getColumns() {
+		return new HashSet<String>(columns);
+	}
+
+	/*
+	 * HELPER METHODS
+	 */
+
+	/**
+	 * @return the references whose key matches the criteria, or all references if
+	 *         the criteria don't fix the whole key
+	 */
+	private Vector<Bucket.Pair> getEntries(Hashtable<String, Object> htblColNameValue)
+			throws ClassNotFoundException, IOException {
+		Vector<Bucket.Pair> entries = new Vector<Bucket.Pair>();
+
+		if (!htblColNameValue.keySet().containsAll(columns)) {
+			// the key is not fully known so every reference is a candidate
+			for (String bucketName : getAllBuckets()) {
+				entries.addAll(loadBucket(bucketName).getRefs());
+			}
+			return entries;
+		}
+
+		Hashtable<String, Object> key = getKey(htblColNameValue);
+		String bucketName = directory.get(getSlot(hash(key)));
+		while (bucketName != null) {
+			HashBucket bucket = loadBucket(bucketName);
+			for (Bucket.Pair pair : bucket.getRefs()) {
+				if (keyMatches(key, pair.getValues())) { // same slot but maybe a different key
+					entries.add(pair);
+				}
+			}
+			bucketName = bucket.getNext();
+		}
+		return entries;
+	}
+
+	/**
+	 * @return the values of the first equality term on each hashed column, as only
+	 *         equality terms can be answered by hashing. No criteria are returned if
+	 *         the terms can't be answered by the index, so all entries are used
+	 */
+	private Hashtable<String, Object> getCriteria(SQLTerm sqlTerms[], String ops[]) {
+		Hashtable<String, Object> htblColNameValue = new Hashtable<String, Object>();
+		if (getScore(sqlTerms, ops) == 0) {
+			return htblColNameValue;
+		}
+		for (SQLTerm sqlTerm : sqlTerms) {
+			if (sqlTerm._strOperator.equals("=") && columns.contains(sqlTerm._strColumnName)
+					&& !htblColNameValue.containsKey(sqlTerm._strColumnName)) {
+				htblColNameValue.put(sqlTerm._strColumnName, sqlTerm._objValue);
+			}
+		}
+		return htblColNameValue;
+	}
+
+	private boolean keyMatches(Hashtable<String, Object> key, Hashtable<String, Object> values) {
+		for (String colName : columns) {
+			if (!Objects.equals(key.get(colName), values.get(colName))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Hashtable<String, Object> getStoredValues(Hashtable<String, Object> htblColNameValue) {
+		Hashtable<String, Object> values = new Hashtable<String, Object>();
+		for (String colName : storedColumns) {
+			if (htblColNameValue.get(colName) != null) {
+				values.put(colName, htblColNameValue.get(colName));
+			}
+		}
+		return values;
+	}
+
+	private Hashtable<String, Object> getKey(Hashtable<String, Object> htblColNameValue) {
+		Hashtable<String, Object> key = new Hashtable<String, Object>();
+		for (String colName : columns) {
+			if (htblColNameValue.get(colName) != null) {
+				key.put(colName, htblColNameValue.get(colName));
+			}
+		}
+		return key;
+	}
+
+	private int hash(Hashtable<String, Object> key) {
+		int h = 0;
+		for (String colName : columns) {
+			Object value = key.get(colName);
+			h = 31 * h + (value == null ? 0 : value.hashCode());
+		}
+		// spreads the bits as the directory only uses the lower ones
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	private int getSlot(int hash) {
+		return hash & ((1 << globalDepth) - 1);
+	}
+
+	private boolean canSplit(HashBucket bucket, int hash) throws ClassNotFoundException, IOException {
+		// splitting is useless if every reference has the same hash as the new key
+		while (bucket != null) {
+			for (Bucket.Pair pair : bucket.getRefs()) {
+				if (hash(pair.getValues()) != hash) {
+					return true;
+				}
+			}
+			bucket = bucket.getNext() != null ? loadBucket(bucket.getNext()) : null;
+		}
+		return false;
+	}
+
+	private void split(HashBucket bucket) throws ClassNotFoundException, IOException {
+		int depth = bucket.getLocalDepth();
+
+		// doubles the directory if the bucket is already distinguished by all bits
+		if (depth == globalDepth) {
+			directory.addAll(new Vector<String>(directory));
+			globalDepth++;
+		}
+
+		// collects the references of the whole chain and drops the overflow buckets
+		Vector<Bucket.Pair> pairs = new Vector<Bucket.Pair>(bucket.getRefs());
+		String bucketName = bucket.getNext();
+		while (bucketName != null) {
+			HashBucket overflow = loadBucket(bucketName);
+			pairs.addAll(overflow.getRefs());
+			BufferPool.delete(bucketName);
+			bucketName = overflow.getNext();
+		}
+		bucket.getRefs().clear();
+		bucket.setNext(null);
+		bucket.setLocalDepth(depth + 1);
+
+		// directory entries having the new bit set point to the new bucket
+		HashBucket sibling = createBucket(depth + 1);
+		for (int i = 0; i < directory.size(); ++i) {
+			if (directory.get(i).equals(bucket.getPath()) && ((i >> depth) & 1) == 1) {
+				directory.set(i, sibling.getPath());
+			}
+		}
+
+		// redistributes the references using the new bit
+		Vector<Bucket.Pair> stay = new Vector<Bucket.Pair>(), move = new Vector<Bucket.Pair>();
+		for (Bucket.Pair pair : pairs) {
+			if (((hash(pair.getValues()) >> depth) & 1) == 1) {
+				move.add(pair);
+			} else {
+				stay.add(pair);
+			}
+		}
+		fill(bucket, stay);
+		fill(sibling, move);
+	}
+
+	private void fill(HashBucket bucket, Vector<Bucket.Pair> pairs) throws IOException {
+		for (Bucket.Pair pair : pairs) {
+			if (bucket.isFull()) {
+				HashBucket overflow = createBucket(bucket.getLocalDepth());
+				bucket.setNext(overflow.getPath());
+				bucket.save();
+				bucket = overflow;
+			}
+			bucket.addRef(pair.getPageName(), pair.getRowNumber(), pair.getValues());
+		}
+		bucket.save();
+	}
+
+	private void insertIntoChain(HashBucket bucket, String pageName, int row, Hashtable<String, Object> values)
+			throws ClassNotFoundException, IOException {
+		while (bucket.isFull() && bucket.getNext() != null) {
+			bucket = loadBucket(bucket.getNext());
+		}
+		if (bucket.isFull()) {
+			HashBucket overflow = createBucket(bucket.getLocalDepth());
+			bucket.setNext(overflow.getPath());
+			bucket.save();
+			bucket = overflow;
+		}
+		bucket.insert(pageName, row, values);
+	}
+
+	/**
+	 * @return names of all primary and overflow buckets of the index
+	 */
+	private LinkedHashSet<String> getAllBuckets() throws ClassNotFoundException, IOException {
+		LinkedHashSet<String> res = new LinkedHashSet<String>();
+		for (String bucketName : directory) {
+			while (bucketName != null && res.add(bucketName)) {
+				bucketName = loadBucket(bucketName).getNext();
+			}
+		}
+		return res;
+	}
+
+	private HashBucket createBucket(int localDepth) throws IOException {
+		return new HashBucket(path, indexId, bucketIdx++, maxBucketSize, localDepth);
+	}
+
+	private HashBucket loadBucket(String path) throws IOException, ClassNotFoundException {
+		Events.BucketRead event = new Events.BucketRead();
+		event.begin();
+		HashBucket bucket = (HashBucket) BufferPool.read(path);
+		event.end(path, bucket.getRefs().size());
+		return bucket;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(
+				path + " HASH " + columns + " storing " + storedColumns + " global depth " + globalDepth + "\n");
+		for (int i = 0; i < directory.size(); ++i) {
+			sb.append("Slot ").append(i).append(": ").append(directory.get(i)).append("\n");
+		}
+		try {
+			for (String bucketName : getAllBuckets()) {
+				sb.append(bucketName).append(": ").append(loadBucket(bucketName).toString()).append("\n");
+			}
+		} catch (ClassNotFoundException | IOException e) {
+			e.printStackTrace();
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Vector;
+
+/**
+ * Common operations of every index type a table can hold. References stored in
+ * an index are (page name, row number) pairs that must be kept in sync with the
+ * pages of the table on every insert, update and delete
+ */
+public interface Index extends Serializable {
+
+	void insert(Hashtable<String, Object> htblColNameValue, String pageName, int row)
+			throws ClassNotFoundException, IOException;
+
+	void remove(Hashtable<String, Object> htblColNameValue) throws ClassNotFoundException, IOException;
+
+	void increment(String pageName, int idx, String ofPage, int maxPageSize)
+			throws ClassNotFoundException, IOException, DBAppException;
+
+	void delete(TreeMap<String, LinkedList<Integer>> deletedPageNameRows) throws ClassNotFoundException, IOException;
+
+	/**
+	 * @param htblColNameValue equality criteria
+	 * @return candidate page names mapped to the row numbers that may match the
+	 *         criteria
+	 */
+	TreeMap<String, LinkedList<Integer>> get(Hashtable<String, Object> htblColNameValue)
+			throws ClassNotFoundException, IOException;
+
+	/**
+	 * @param sqlTerms the terms of the select statement
+	 * @param ops      the operators between the terms
+	 * @return candidate page names mapped to the row numbers that may match the
+	 *         terms
+	 */
+	TreeMap<String, LinkedList<Integer>> select(SQLTerm sqlTerms[], String ops[])
+			throws ClassNotFoundException, IOException;
+
+	/**
+	 * @param sqlTerms the terms of the select statement
+	 * @param ops      the operators between the terms
+	 * @return the references that may match the terms together with the values
+	 *         stored for them
+	 */
+	Vector<Bucket.Pair> getEntries(SQLTerm sqlTerms[], String ops[]) throws ClassNotFoundException, IOException;
+
+	/**
+	 * @param colNames the columns needed by a query
+	 * @return true if the index stores the values of all the passed columns, so the
+	 *         query can be answered without loading pages
+	 */
+	boolean covers(Set<String> colNames);
+
+	/**
+	 * describes the part of the index a select with the terms reads into the plan,
+	 * from what is kept in memory only, and adds the terms it doesn't narrow down
+	 * as residual predicates
+	 *
+	 * @param sqlTerms the terms of the select statement
+	 * @param ops      the operators between the terms
+	 */
+	void explain(SQLTerm sqlTerms[], String ops[], QueryPlan plan);
+
+	/**
+	 * scores how useful this index is for the passed terms, used to pick the index
+	 * to use in select and delete
+	 *
+	 * @param sqlTerms the terms to be answered
+	 * @param ops      the operators between the terms
+	 * @return 0 if the index can't be used, otherwise the higher the better
+	 */
+	int getScore(SQLTerm sqlTerms[], String ops[]);
+
+	boolean isOnColumn(String colName);
+
+	Set<String> getColumns();
+}
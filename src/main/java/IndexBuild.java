@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A grid index being built while writes to its table go on. It sits in the
+ * indices of the table so every write reaches it, but instead of changing
+ * buckets it records the changes in a side log and it is never used to answer
+ * queries. Once the pages are scanned the side log is replayed on the scanned
+ * references and the complete index takes its place
+ */
+public class IndexBuild implements Index {
+
+	/**
+	 * a change the table made to its indices while the build was running
+	 */
+	private static class Change implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private static final byte INSERT = 1, REMOVE = 2, INCREMENT = 3, DELETE = 4;
+
+		private byte type;
+		private Hashtable<String, Object> values;
+		private String pageName, ofPage;
+		private int row, maxPageSize;
+		private TreeMap<String, LinkedList<Integer>> deletedPageNameRows;
+
+		Change(byte type) {
+			this.type = type;
+		}
+	}
+
+	private static final long serialVersionUID = 1L;
+	private static final AtomicLong nextId = new AtomicLong(1);
+	private static Set<Long> running = Collections.synchronizedSet(new HashSet<Long>()); // builds of this process
+
+	private long id;
+	private GridIndex index;
+	private Vector<Change> sideLog;
+
+	/**
+	 * @param index the empty index to be built
+	 */
+	public IndexBuild(GridIndex index) {
+		this.id = nextId.getAndIncrement();
+		this.index = index;
+		this.sideLog = new Vector<Change>();
+		running.add(id);
+	}
+
+	public GridIndex getIndex() {
+		return index;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return false if the process running the build stopped, the build is then
+	 *         abandoned
+	 */
+	public boolean isRunning() {
+		return running.contains(id);
+	}
+
+	/**
+	 * stops recording changes, called once the build completes or fails
+	 */
+	public void finish() {
+		running.remove(id);
+	}
+
+	/**
+	 * applies the changes in the side log to the references found by scanning the
+	 * table, leaving the references of the table as it is now
+	 *
+	 * @param cells the cells of the index mapped to the scanned references
+	 */
+	void catchUp(TreeMap<Integer, Vector<GridIndex.Ref>> cells) throws DBAppException {
+		for (Change c : sideLog) {
+			switch (c.type) {
+			case Change.INSERT:
+				cells.computeIfAbsent(index.getCell(c.values), k -> new Vector<GridIndex.Ref>())
+						.add(new GridIndex.Ref(c.pageName, c.row, c.values));
+				break;
+			case Change.REMOVE:
+				Vector<GridIndex.Ref> refs = cells.get(index.getCell(c.values));
+				if (refs != null) {
+					for (int i = 0; i < refs.size(); ++i) {
+						if (refs.get(i).values.equals(c.values)) {
+							refs.remove(i);
+							break;
+						}
+					}
+				}
+				break;
+			case Change.INCREMENT:
+				for (Vector<GridIndex.Ref> cell : cells.values()) {
+					for (GridIndex.Ref ref : cell) {
+						if (ref.pageName.equals(c.pageName) && ref.row >= c.row) {
+							ref.row++;
+							if (ref.row == c.maxPageSize) {
+								if (c.ofPage == null) {
+									throw new DBAppException("Internal engine error, overflow set to null, but needed");
+								}
+								ref.row = 0;
+								ref.pageName = c.ofPage;
+							}
+						}
+					}
+				}
+				break;
+			case Change.DELETE:
+				for (Vector<GridIndex.Ref> cell : cells.values()) {
+					for (int i = 0; i < cell.size(); ++i) {
+						GridIndex.Ref ref = cell.get(i);
+						LinkedList<Integer> deleted = c.deletedPageNameRows.get(ref.pageName);
+						if (deleted == null) {
+							continue;
+						}
+						if (deleted.contains(ref.row)) {
+							cell.remove(i--);
+						} else {
+							int count = 0;
+							for (int deletedRow : deleted) {
+								if (ref.row > deletedRow)
+									count++;
+							}
+							ref.row -= count;
+						}
+					}
+				}
+				break;
+			}
+		}
+		sideLog.clear();
+	}
+
+	// the values passed by the table are changed in place later so they are copied
+
+	public void insert(Hashtable<String, Object> htblColNameValue, String pageName, int row) {
+		Change c = new Change(Change.INSERT);
+		c.values = new Hashtable<String, Object>(htblColNameValue);
+		c.pageName = pageName;
+		c.row = row;
+		sideLog.add(c);
+	}
+
+	public void remove(Hashtable<String, Object> htblColNameValue) {
+		Change c = new Change(Change.REMOVE);
+		c.values = new Hashtable<String, Object>(htblColNameValue);
+		sideLog.add(c);
+	}
+
+	public void increment(String pageName, int idx, String ofPage, int maxPageSize) {
+		Change c = new Change(Change.INCREMENT);
+		c.pageName = pageName;
+		c.row = idx;
+		c.ofPage = ofPage;
+		c.maxPageSize = maxPageSize;
+		sideLog.add(c);
+	}
+
+	public void delete(TreeMap<String, LinkedList<Integer>> deletedPageNameRows) {
+		Change c = new Change(Change.DELETE);
+		c.deletedPageNameRows = new TreeMap<String, LinkedList<Integer>>();
+		for (Entry<String, LinkedList<Integer>> e : deletedPageNameRows.entrySet()) {
+			c.deletedPageNameRows.put(e.getKey(), new LinkedList<Integer>(e.getValue()));
+		}
+		sideLog.add(c);
+	}
+
+	// never used by queries until the build completes
+
+	public TreeMap<String, LinkedList<Integer>> get(Hashtable<String, Object> htblColNameValue) {
+		return new TreeMap<String, LinkedList<Integer>>();
+	}
+
+	public TreeMap<String, LinkedList<Integer>> select(SQLTerm sqlTerms[], String ops[]) {
+		return new TreeMap<String, LinkedList<Integer>>();
+	}
+
+	public Vector<Bucket.Pair> getEntries(SQLTerm sqlTerms[], String ops[]) {
+		return new Vector<Bucket.Pair>();
+	}
+
+	public boolean covers(Set<String> colNames) {
+		return false;
+	}
+
+	public void explain(SQLTerm sqlTerms[], String ops[], QueryPlan plan) {
+		plan.setIndex("building " + index.getColumns(), 0, 0, 0, 0);
+	}
+
+	public int getScore(SQLTerm sqlTerms[], String ops[]) {
+		return 0;
+	}
+
+	public boolean isOnColumn(String colName) {
+		return false;
+	}
+
+	public Set<String> getColumns() {
+		return new HashSet<String>();
+	}
+
+	public String toString() {
+		return "BUILDING " + sideLog.size() + " changes behind\n" + index;
+	}
+}
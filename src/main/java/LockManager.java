@@ -0,0 +1,101 @@
+import java.io.File;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hands out the shared and exclusive table locks taken by operations and the
+ * latches the buffer pool holds while a file is read from or written to disk.
+ * Locks are held by the transaction of the thread until it ends, a lock that
+ * can't be taken within the timeout fails the operation instead of waiting
+ * forever on a deadlock. Tables and metadata files are locked by their absolute
+ * path, so databases in different directories never block each other while
+ * DBApps sharing a directory do
+ */
+public class LockManager {
+
+	private static final int LATCHES = 256;
+
+	private static Hashtable<String, ReentrantReadWriteLock> locks = new Hashtable<String, ReentrantReadWriteLock>();
+	private static ReentrantLock latches[] = new ReentrantLock[LATCHES];
+
+	static {
+		for (int i = 0; i < LATCHES; ++i) {
+			latches[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * locks the table for reading until the current transaction ends
+	 *
+	 * @param tablePath  the directory of the table
+	 * @param lngTimeout the milliseconds to wait for the lock before giving up
+	 * @throws DBAppException when the lock isn't granted within the timeout
+	 */
+	public static void lockShared(String tablePath, long lngTimeout) throws DBAppException {
+		acquire(getLock(tablePath).readLock(), "table `" + tablePath + "`", lngTimeout);
+	}
+
+	/**
+	 * locks the table for writing until the current transaction ends
+	 *
+	 * @param tablePath  the directory of the table
+	 * @param lngTimeout the milliseconds to wait for the lock before giving up
+	 * @throws DBAppException when the lock isn't granted within the timeout
+	 */
+	public static void lockExclusive(String tablePath, long lngTimeout) throws DBAppException {
+		acquire(getLock(tablePath).writeLock(), "table `" + tablePath + "`", lngTimeout);
+	}
+
+	/**
+	 * locks the metadata file for changes until the current transaction ends,
+	 * always taken after the table lock
+	 *
+	 * @param metadataPath the path of the metadata file
+	 * @param lngTimeout   the milliseconds to wait for the lock before giving up
+	 * @throws DBAppException when the lock isn't granted within the timeout
+	 */
+	public static void lockCatalog(String metadataPath, long lngTimeout) throws DBAppException {
+		acquire(getLock(metadataPath).writeLock(), "the metadata `" + metadataPath + "`", lngTimeout);
+	}
+
+	/**
+	 * @param path the path of a file
+	 * @return the latch guarding disk reads and writes of the file, files share
+	 *         latches so their number stays fixed
+	 */
+	static Lock latch(String path) {
+		return latches[(path.hashCode() & 0x7fffffff) % LATCHES];
+	}
+
+	private static ReentrantReadWriteLock getLock(String path) {
+		String key = new File(path).getAbsolutePath();
+		synchronized (locks) {
+			ReentrantReadWriteLock lock = locks.get(key);
+			if (lock == null) {
+				lock = new ReentrantReadWriteLock();
+				locks.put(key, lock);
+			}
+			return lock;
+		}
+	}
+
+	private static void acquire(Lock lock, String name, long timeout) throws DBAppException {
+		Transaction txn = Transaction.current();
+		if (txn == null) {
+			throw new DBAppException("Can't lock " + name + " outside a transaction");
+		}
+		try {
+			if (!lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+				throw new DBAppException(
+						"Couldn't lock " + name + " as other transactions held it for more than " + timeout + "ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DBAppException("Interrupted while waiting to lock " + name);
+		}
+		txn.hold(lock);
+	}
+}
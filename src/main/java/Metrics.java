@@ -0,0 +1,232 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Counters, latency histograms and gauges of the engine, shared by every DBApp
+ * of the process. Metrics are created on first use so recording one costs an
+ * addition on a striped counter. Snapshots flatten them into numbers by name,
+ * which are also the attributes of the MBean registered by register
+ */
+public class Metrics implements DynamicMBean {
+
+	/**
+	 * latencies in nanoseconds counted in buckets of 8 per power of two, so the
+	 * reported percentiles are within 1/8 of the actual ones
+	 */
+	private static class Histogram {
+
+		private static final int SUB_BUCKETS = 8, SHIFT = 3;
+
+		private LongAdder count = new LongAdder(), sum = new LongAdder();
+		private AtomicLongArray buckets = new AtomicLongArray((64 - SHIFT + 1) * SUB_BUCKETS);
+		private volatile long max;
+
+		void record(long nanos) {
+			nanos = Math.max(nanos, 0);
+			count.increment();
+			sum.add(nanos);
+			buckets.incrementAndGet(bucketOf(nanos));
+			if (nanos > max) {
+				synchronized (this) {
+					max = Math.max(max, nanos);
+				}
+			}
+		}
+
+		private static int bucketOf(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int exp = 63 - Long.numberOfLeadingZeros(value);
+			return (exp - SHIFT + 1) * SUB_BUCKETS + (int) ((value >>> (exp - SHIFT)) & (SUB_BUCKETS - 1));
+		}
+
+		/**
+		 * @return the middle of the values counted in the bucket
+		 */
+		private static double valueOf(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int exp = bucket / SUB_BUCKETS + SHIFT - 1;
+			long width = 1L << (exp - SHIFT);
+			return (SUB_BUCKETS + bucket % SUB_BUCKETS) * (double) width + width / 2.0;
+		}
+
+		private double percentile(double p, long total) {
+			long rank = (long) Math.ceil(p * total), seen = 0;
+			for (int i = 0; i < buckets.length(); ++i) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					return Math.min(valueOf(i), max);
+				}
+			}
+			return max;
+		}
+
+		void snapshot(String name, TreeMap<String, Number> res) {
+			long total = count.sum();
+			res.put(name + ".count", total);
+			if (total == 0) {
+				return;
+			}
+			res.put(name + ".meanMicros", sum.sum() / (double) total / 1000);
+			res.put(name + ".p50Micros", percentile(0.5, total) / 1000);
+			res.put(name + ".p99Micros", percentile(0.99, total) / 1000);
+			res.put(name + ".maxMicros", max / 1000.0);
+		}
+	}
+
+	private static final String OBJECT_NAME = "DBApp:type=Metrics";
+
+	private static ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+	private static ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	private static ConcurrentHashMap<String, Supplier<Number>> gauges = new ConcurrentHashMap<String, Supplier<Number>>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * @return the counter with the name, kept by callers counting often
+	 */
+	public static LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, k -> new LongAdder());
+	}
+
+	public static void increment(String name) {
+		counter(name).increment();
+	}
+
+	public static void add(String name, long value) {
+		counter(name).add(value);
+	}
+
+	/**
+	 * records the time an operation took
+	 *
+	 * @param name  the name of the operation
+	 * @param start the System.nanoTime the operation started at
+	 */
+	public static void recordSince(String name, long start) {
+		histograms.computeIfAbsent(name, k -> new Histogram()).record(System.nanoTime() - start);
+	}
+
+	/**
+	 * @param gauge computes the current value whenever a snapshot is taken
+	 */
+	public static void gauge(String name, Supplier<Number> gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * @return the current value of every metric by name, histograms give their
+	 *         count, mean, median, 99th percentile and maximum in microseconds
+	 */
+	public static TreeMap<String, Number> snapshot() {
+		TreeMap<String, Number> res = new TreeMap<String, Number>();
+		for (Entry<String, LongAdder> e : counters.entrySet()) {
+			res.put(e.getKey(), e.getValue().sum());
+		}
+		for (Entry<String, Histogram> e : histograms.entrySet()) {
+			e.getValue().snapshot(e.getKey(), res);
+		}
+		for (Entry<String, Supplier<Number>> e : gauges.entrySet()) {
+			res.put(e.getKey(), e.getValue().get());
+		}
+		return res;
+	}
+
+	/**
+	 * clears the counters and histograms, gauges keep reporting
+	 */
+	public static void reset() {
+		for (LongAdder counter : counters.values()) {
+			counter.reset(); // kept, callers may hold them
+		}
+		histograms.clear();
+	}
+
+	/**
+	 * registers the metrics with the platform MBean server once, a failure leaves
+	 * the engine running without them
+	 */
+	public static synchronized void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new Metrics(), name);
+			}
+		} catch (JMException | SecurityException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// the MBean exposes the snapshot as read only attributes
+
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Number value = snapshot().get(attribute);
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException(attribute.getName() + " is read only");
+	}
+
+	public AttributeList getAttributes(String[] attributes) {
+		TreeMap<String, Number> snapshot = snapshot();
+		AttributeList res = new AttributeList();
+		for (String attribute : attributes) {
+			if (snapshot.containsKey(attribute)) {
+				res.add(new Attribute(attribute, snapshot.get(attribute)));
+			}
+		}
+		return res;
+	}
+
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		if (actionName.equals("reset") && (params == null || params.length == 0)) {
+			reset();
+			return null;
+		}
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	public MBeanInfo getMBeanInfo() {
+		TreeMap<String, Number> snapshot = snapshot();
+		MBeanAttributeInfo attributes[] = new MBeanAttributeInfo[snapshot.size()];
+		int i = 0;
+		for (Entry<String, Number> e : snapshot.entrySet()) {
+			attributes[i++] = new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true,
+					false, false);
+		}
+		MBeanOperationInfo operations[] = { new MBeanOperationInfo("reset", "clears the counters and histograms",
+				null, "void", MBeanOperationInfo.ACTION) };
+		return new MBeanInfo(getClass().getName(), "metrics of the DBApp engine", attributes, null, operations,
+				null);
+	}
+}
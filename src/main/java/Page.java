@@ -1,15 +1,27 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
 
+/**
+ * A page of a table. Its file holds the row ids then the values of each column
+ * together, a page read from disk decodes its tuples only once they are used,
+ * and a projection decodes the columns it needs only
+ */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class Page implements Serializable {
 
@@ -20,7 +32,9 @@ public class Page implements Serializable {
 	private int numberOfElements;
 	private int maximumSize;
 	private String path, clusteringKeyColumn, clusteringKeyType;
-	private Vector<Tuple> tuples; // changed to vector as required
+	private transient Vector<Tuple> tuples; // changed to vector as required, null until decoded
+	private transient int rowIds[]; // of the tuples not decoded yet
+	private transient Hashtable<String, byte[]> columns; // the encoded values of each column not decoded yet
 
 	/**
 	 * constructor of the page
@@ -42,34 +56,27 @@ public class Page implements Serializable {
 	/**
 	 * inserts the tuple in the specified location in page
 	 * 
-	 * @param htblColNameValue key-value pairs representing the tuple to be inserted
-	 * @param insIdx           the position the tuple to be inserted in
+	 * @param tuple  the tuple to be inserted
+	 * @param insIdx the position the tuple to be inserted in
 	 * @return the kicked out tuple if it exists
 	 * @throws FileNotFoundException when saving fails
 	 * @throws IOException           when saving fails
 	 */
-	public Tuple insert(Hashtable<String, Object> htblColNameValue, int insIdx)
-			throws FileNotFoundException, IOException {
+	public Tuple insert(Tuple tuple, int insIdx) throws FileNotFoundException, IOException {
 
 		// saves the state of the page before insert
 		boolean wasFull = isFull();
 
-		// populate a new tuple with insert values
-		Tuple tuple = new Tuple(clusteringKeyColumn);
-		for (Entry<String, Object> e : htblColNameValue.entrySet()) {
-			tuple.setValue(e.getKey(), e.getValue());
-		}
-
 		// validates the insert position and adds the tuple in position
-		if (insIdx < tuples.size()) {
-			tuples.add(insIdx, tuple);
+		if (insIdx < tuples().size()) {
+			tuples().add(insIdx, tuple);
 		} else {
-			tuples.add(tuple);
+			tuples().add(tuple);
 		}
 
 		// depending on the saved state either a tuple is kicked out or nothing changes
 		if (wasFull) {
-			Tuple outTuple = tuples.remove(numberOfElements);
+			Tuple outTuple = tuples().remove(numberOfElements);
 			save();
 			return outTuple;
 		} else {
@@ -82,19 +89,13 @@ public class Page implements Serializable {
 	/**
 	 * inserts the tuple at the end of the page
 	 * 
-	 * @param htblColNameValue key-value pairs representing the tuple to be inserted
+	 * @param tuple the tuple to be inserted
 	 * @throws FileNotFoundException when saving fails
 	 * @throws IOException           when saving fails
 	 */
-	public void insert(Hashtable<String, Object> htblColNameValue) throws FileNotFoundException, IOException {
-		// populate a new tuple with insert values
-		Tuple tuple = new Tuple(clusteringKeyColumn);
-		for (Entry<String, Object> e : htblColNameValue.entrySet()) {
-			tuple.setValue(e.getKey(), e.getValue());
-		}
-
+	public void insert(Tuple tuple) throws FileNotFoundException, IOException {
 		// push new tuple to the end of existing vector
-		tuples.add(tuple);
+		tuples().add(tuple);
 
 		// increment size of page and save
 		numberOfElements++;
@@ -116,7 +117,7 @@ public class Page implements Serializable {
 		int lo = 0, hi = numberOfElements - 1, res = -1;
 		while (lo <= hi) {
 			int mid = lo + (hi - lo) / 2;
-			Comparable oValueC = getComparable(tuples.get(mid).getClusteringKeyValue(), clusteringKeyType);
+			Comparable oValueC = getComparable(tuples().get(mid).getClusteringKeyValue(), clusteringKeyType);
 			if (valueC.compareTo(oValueC) <= 0) {
 				res = mid;
 				hi = mid - 1;
@@ -125,7 +126,7 @@ public class Page implements Serializable {
 			}
 		}
 
-		Comparable oValueC = getComparable(tuples.get(res).getClusteringKeyValue(), clusteringKeyType);
+		Comparable oValueC = getComparable(tuples().get(res).getClusteringKeyValue(), clusteringKeyType);
 		if (valueC.compareTo(oValueC) == 0) {
 			throw new DBAppException("Couldn't insert into table as a tuple with the clustering key `" + value
 					+ "` already exists in table.");
@@ -152,7 +153,7 @@ public class Page implements Serializable {
 		int lo = 0, hi = numberOfElements - 1, res = -1;
 		while (lo <= hi) {
 			int mid = lo + (hi - lo) / 2;
-			Comparable oValueC = getComparable(tuples.get(mid).getClusteringKeyValue(), clusteringKeyType);
+			Comparable oValueC = getComparable(tuples().get(mid).getClusteringKeyValue(), clusteringKeyType);
 			int chk = clusteringKeyValue.compareTo(oValueC);
 			if (chk == 0) {
 				res = mid;
@@ -181,7 +182,7 @@ public class Page implements Serializable {
 	private Tuple update(int index, Hashtable<String, Object> htblColNameValue)
 			throws FileNotFoundException, IOException {
 		// get the tuple at the specified index
-		Tuple t = tuples.get(index);
+		Tuple t = tuples().get(index);
 
 		// set the tuple values to the new values
 		for (Entry<String, Object> e : htblColNameValue.entrySet()) {
@@ -195,33 +196,37 @@ public class Page implements Serializable {
 	}
 
 	/**
+	 * deletes all tuples in page matching the criteria
 	 * 
-	 * @param htblColNameValue
+	 * @param htblColNameValue key-value pairs representing the criteria of deletion
+	 * @return the positions the deleted tuples had before deletion
 	 * @throws FileNotFoundException
 	 * @throws IOException
 	 */
-	public void delete(Hashtable<String, Object> htblColNameValue) throws FileNotFoundException, IOException {
-		boolean changed = false;
+	public LinkedList<Integer> delete(Hashtable<String, Object> htblColNameValue)
+			throws FileNotFoundException, IOException {
+		LinkedList<Integer> deleted = new LinkedList<Integer>();
 		// linear search over the tuples in the page
 		for (int i = 0; i < numberOfElements; ++i) {
 			// check if tuple matches all values in the criteria
 			boolean flag = true;
 			for (Entry<String, Object> e : htblColNameValue.entrySet()) {
-				flag &= tuples.get(i).checkKeyValue(e.getKey(), e.getValue());
+				flag &= tuples().get(i).checkKeyValue(e.getKey(), e.getValue());
 			}
 
 			// if it matches then delete it
 			if (flag) {
-				changed = true;
-				tuples.remove(i--);
+				deleted.add(i + deleted.size());
+				tuples().remove(i--);
 				numberOfElements--;
 			}
 		}
 
 		// if deletion happened then save page
-		if (changed) {
+		if (!deleted.isEmpty()) {
 			save();
 		}
+		return deleted;
 	}
 
 	/**
@@ -229,17 +234,18 @@ public class Page implements Serializable {
 	 * 
 	 * @param clusteringKeyValue the value of the clustering key in the tuple to be
 	 *                           deleted
+	 * @return the position of the deleted tuple, -1 if nothing was deleted
 	 * @throws FileNotFoundException
 	 * @throws IOException
 	 */
-	public void delete(Object clusteringKeyValue, Hashtable<String, Object> htblColNameValue)
+	public int delete(Object clusteringKeyValue, Hashtable<String, Object> htblColNameValue)
 			throws FileNotFoundException, IOException {
 		// binary search using clustering key value to find tuple position
 		int lo = 0, hi = numberOfElements - 1, res = -1;
 		Comparable valueC = getComparable(clusteringKeyValue, clusteringKeyType);
 		while (lo <= hi) {
 			int mid = lo + (hi - lo) / 2;
-			Comparable oValueC = getComparable(tuples.get(mid).getClusteringKeyValue(), clusteringKeyType);
+			Comparable oValueC = getComparable(tuples().get(mid).getClusteringKeyValue(), clusteringKeyType);
 			int chk = valueC.compareTo(oValueC);
 			if (chk == 0) {
 				res = mid;
@@ -256,34 +262,36 @@ public class Page implements Serializable {
 			boolean flag = true;
 
 			for (Entry<String, Object> e : htblColNameValue.entrySet()) {
-				if (tuples.get(res).getValues().get(e.getKey()) == null) {
+				if (tuples().get(res).getValues().get(e.getKey()) == null) {
 					flag = false;
 				} else {
-					flag &= tuples.get(res).checkKeyValue(e.getKey(), e.getValue());
+					flag &= tuples().get(res).checkKeyValue(e.getKey(), e.getValue());
 				}
 			}
 
 			if (flag) {
-				tuples.remove(res);
+				tuples().remove(res);
 				numberOfElements--;
 				save();
+				return res;
 			}
 		}
+		return -1;
 	}
 
 	private boolean deleteAtIndex(int idx, Hashtable<String, Object> htblColNameValue) {
 		boolean flag = true;
 
 		for (Entry<String, Object> e : htblColNameValue.entrySet()) {
-			if (tuples.get(idx).getValues().get(e.getKey()) == null) {
+			if (tuples().get(idx).getValues().get(e.getKey()) == null) {
 				flag = false;
 			} else {
-				flag &= tuples.get(idx).checkKeyValue(e.getKey(), e.getValue());
+				flag &= tuples().get(idx).checkKeyValue(e.getKey(), e.getValue());
 			}
 		}
 
 		if (flag) {
-			tuples.remove(idx);
+			tuples().remove(idx);
 			numberOfElements--;
 			return true;
 		}
@@ -312,6 +320,140 @@ public class Page implements Serializable {
 	 * HELPER METHODS
 	 */
 
+	/**
+	 * @return the tuples of the page, decoding them on first use
+	 */
+	private Vector<Tuple> tuples() {
+		if (tuples == null) {
+			tuples = decode(columns.keySet());
+			rowIds = null;
+			columns = null;
+		}
+		return tuples;
+	}
+
+	/**
+	 * @return the tuples of the page holding the values of the columns only
+	 */
+	private Vector<Tuple> decode(Set<String> colNames) {
+		Vector<Tuple> res = new Vector<Tuple>(rowIds.length);
+		for (int rowId : rowIds) {
+			Tuple t = new Tuple(clusteringKeyColumn);
+			t.setRowId(rowId);
+			res.add(t);
+		}
+		for (String colName : colNames) {
+			byte block[] = columns.get(colName);
+			if (block == null) {
+				continue; // null in every tuple
+			}
+			ByteBuffer in = ByteBuffer.wrap(block);
+			for (Tuple t : res) {
+				Object value = readValue(in);
+				if (value != null) {
+					t.setValue(colName, value);
+				}
+			}
+		}
+		return res;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		if (tuples == null) {
+			// never decoded, the blocks read are written back as they are
+			out.writeInt(rowIds.length);
+			for (int rowId : rowIds) {
+				out.writeInt(rowId);
+			}
+			out.writeInt(columns.size());
+			for (Entry<String, byte[]> e : columns.entrySet()) {
+				out.writeUTF(e.getKey());
+				out.writeInt(e.getValue().length);
+				out.write(e.getValue());
+			}
+			return;
+		}
+
+		out.writeInt(tuples.size());
+		TreeSet<String> colNames = new TreeSet<String>();
+		for (Tuple t : tuples) {
+			out.writeInt(t.getRowId());
+			colNames.addAll(t.getValues().keySet());
+		}
+		out.writeInt(colNames.size());
+		for (String colName : colNames) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream block = new DataOutputStream(bos);
+			for (Tuple t : tuples) {
+				writeValue(block, t.getValue(colName));
+			}
+			block.flush();
+			out.writeUTF(colName);
+			out.writeInt(bos.size());
+			bos.writeTo(out);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		rowIds = new int[in.readInt()];
+		for (int i = 0; i < rowIds.length; ++i) {
+			rowIds[i] = in.readInt();
+		}
+		int n = in.readInt();
+		columns = new Hashtable<String, byte[]>();
+		for (int i = 0; i < n; ++i) {
+			String colName = in.readUTF();
+			byte block[] = new byte[in.readInt()];
+			in.readFully(block);
+			columns.put(colName, block);
+		}
+	}
+
+	// a value is encoded as its type followed by its bytes
+	private static final byte NULL = 0, INTEGER = 1, DOUBLE = 2, STRING = 3, DATE = 4;
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof String) {
+			byte bytes[] = ((String) value).getBytes(StandardCharsets.UTF_8);
+			out.writeByte(STRING);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if (value instanceof Date) {
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		} else {
+			throw new NotSerializableException(value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(ByteBuffer in) {
+		switch (in.get()) {
+			case INTEGER:
+				return in.getInt();
+			case DOUBLE:
+				return in.getDouble();
+			case STRING: {
+				byte bytes[] = new byte[in.getInt()];
+				in.get(bytes);
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+			case DATE:
+				return new Date(in.getLong());
+			default:
+				return null;
+		}
+	}
+
 	private Comparable getComparable(Object o, String type) {
 		Comparable res = null;
 		switch (type) {
@@ -334,16 +476,17 @@ public class Page implements Serializable {
 	}
 
 	private void save() throws FileNotFoundException, IOException {
-		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(path));
-		oos.writeObject(this);
-		oos.close();
+		Events.PageWrite event = new Events.PageWrite();
+		event.begin();
+		BufferPool.write(path, this);
+		event.end(path, numberOfElements);
 	}
 
 	public boolean tupleExists(Comparable clusteringKeyValue) {
 		int lo = 0, hi = numberOfElements - 1, res = -1;
 		while (lo <= hi) {
 			int mid = lo + (hi - lo) / 2;
-			Comparable oValueC = getComparable(tuples.get(mid).getClusteringKeyValue(), clusteringKeyType);
+			Comparable oValueC = getComparable(tuples().get(mid).getClusteringKeyValue(), clusteringKeyType);
 			int chk = clusteringKeyValue.compareTo(oValueC);
 			if (chk == 0) {
 				res = mid;
@@ -358,7 +501,7 @@ public class Page implements Serializable {
 	}
 
 	public Tuple getTupleAt(int idx) {
-		return tuples.get(idx);
+		return tuples().get(idx);
 	}
 
 	public Tuple getTuple(Comparable clusteringKeyValue) {
@@ -366,7 +509,7 @@ public class Page implements Serializable {
 		int lo = 0, hi = numberOfElements - 1, res = -1;
 		while (lo <= hi) {
 			int mid = lo + (hi - lo) / 2;
-			Comparable oValueC = getComparable(tuples.get(mid).getClusteringKeyValue(), clusteringKeyType);
+			Comparable oValueC = getComparable(tuples().get(mid).getClusteringKeyValue(), clusteringKeyType);
 			int chk = clusteringKeyValue.compareTo(oValueC);
 			if (chk == 0) {
 				res = mid;
@@ -378,14 +521,14 @@ public class Page implements Serializable {
 			}
 		}
 		// if tuple index then return this tuple
-		return res != -1 ? tuples.get(res) : null;
+		return res != -1 ? tuples().get(res) : null;
 	}
 
 	public int getIndexOf(Comparable clusteringKeyValue) {
 		int lo = 0, hi = numberOfElements - 1, res = -1;
 		while (lo <= hi) {
 			int mid = lo + (hi - lo) / 2;
-			Comparable oValueC = getComparable(tuples.get(mid).getClusteringKeyValue(), clusteringKeyType);
+			Comparable oValueC = getComparable(tuples().get(mid).getClusteringKeyValue(), clusteringKeyType);
 			int chk = clusteringKeyValue.compareTo(oValueC);
 			if (chk == 0) {
 				res = mid;
@@ -401,11 +544,22 @@ public class Page implements Serializable {
 	}
 
 	public Tuple getLast() {
-		return getTupleAt(tuples.size() - 1);
+		return getTupleAt(tuples().size() - 1);
 	}
 
 	public Vector<Tuple> getTuples() {
-		return tuples;
+		return tuples();
+	}
+
+	/**
+	 * decodes the columns needed by a projection without the others, unless the
+	 * page was decoded already
+	 * 
+	 * @param colNames the columns needed, null for all of them
+	 * @return the tuples of the page holding at least the values of the columns
+	 */
+	public Vector<Tuple> getTuples(Set<String> colNames) {
+		return tuples != null || colNames == null ? tuples() : decode(colNames);
 	}
 
 	public int getSize() {
@@ -423,7 +577,7 @@ public class Page implements Serializable {
 	public String toString() {
 		StringBuilder res = new StringBuilder("########################### PAGE  ###########################\n");
 		int i = 0;
-		for (Tuple t : tuples) {
+		for (Tuple t : tuples()) {
 			res.append((i++) + ":").append(t.toString()).append("\n");
 		}
 		return res.toString();
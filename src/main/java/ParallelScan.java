@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scans pages on a fork join pool. The pages to scan are split into ranges
+ * handled by separate tasks which load and filter their pages concurrently, the
+ * results are kept in page order so a scan returns tuples in clustering key order
+ * just like a sequential one. The tasks run in the transaction of the thread
+ * starting the scan, so they see the same snapshot and writes.
+ *
+ * Every DBApp scans on a pool of its own sized by ScanParallelism in its config.
+ * Pools are never shut down, their threads end once idle so a pool dropped by a
+ * DBApp initialized again still finishes the scans running on it
+ */
+public class ParallelScan {
+
+	static final ParallelScan SEQUENTIAL = new ParallelScan(1);
+
+	private ForkJoinPool pool; // null to scan on the calling thread
+
+	/**
+	 * the work done on every page of a scan
+	 */
+	public interface PageTask<T> {
+		/**
+		 * @param pageIdx the index of the page in the table
+		 * @return the result for the page, null if there is nothing to return
+		 */
+		T scan(int pageIdx) throws IOException, ClassNotFoundException;
+	}
+
+	/**
+	 * @param parallelism the number of threads scanning pages, 1 scans on the
+	 *                    calling thread
+	 */
+	public ParallelScan(int parallelism) {
+		pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * runs the task on every page passed
+	 *
+	 * @param pageIdxs the indices of the pages to scan in order
+	 * @param task     the work done on each page
+	 * @return the results of the task for each page in the order of the pages
+	 * @throws IOException            when loading a page fails
+	 * @throws ClassNotFoundException when loading a page fails
+	 */
+	public <T> Vector<T> map(Vector<Integer> pageIdxs, PageTask<T> task)
+			throws IOException, ClassNotFoundException {
+		Vector<T> results = new Vector<T>();
+		results.setSize(pageIdxs.size());
+
+		if (pool == null || pageIdxs.size() <= 1) {
+			for (int i = 0; i < pageIdxs.size(); ++i) {
+				results.set(i, task.scan(pageIdxs.get(i)));
+			}
+			return results;
+		}
+
+		try {
+			pool.invoke(new RangeTask<T>(pageIdxs, 0, pageIdxs.size(), task, Transaction.current(), results));
+		} catch (RuntimeException e) {
+			// fork join may wrap the exception thrown by the task
+			for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof ClassNotFoundException) {
+					throw (ClassNotFoundException) cause;
+				}
+			}
+			throw e;
+		}
+		return results;
+	}
+
+	private static class RangeTask<T> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private Vector<Integer> pageIdxs;
+		private int lo, hi;
+		private PageTask<T> task;
+		private Transaction txn;
+		private Vector<T> results;
+
+		RangeTask(Vector<Integer> pageIdxs, int lo, int hi, PageTask<T> task, Transaction txn, Vector<T> results) {
+			this.pageIdxs = pageIdxs;
+			this.lo = lo;
+			this.hi = hi;
+			this.task = task;
+			this.txn = txn;
+			this.results = results;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = lo + (hi - lo) / 2;
+				invokeAll(new RangeTask<T>(pageIdxs, lo, mid, task, txn, results),
+						new RangeTask<T>(pageIdxs, mid, hi, task, txn, results));
+				return;
+			}
+
+			Transaction prev = Transaction.setCurrent(txn);
+			try {
+				results.set(lo, task.scan(pageIdxs.get(lo)));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			} finally {
+				Transaction.setCurrent(prev);
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+import java.util.Vector;
+
+/**
+ * How a select would be answered, worked out from what the table keeps in memory
+ * without loading pages or buckets: the access path, the index used and how much
+ * of it the terms select, the pages to be read, the terms left to be checked on
+ * every tuple read and the estimated cost the path was picked by
+ */
+public class QueryPlan {
+
+	private String accessPath, index;
+	private int cells, totalCells, buckets, references, pages, totalPages;
+	private long rows = -1;
+	private double cost;
+	private Vector<String> residualPredicates = new Vector<String>();
+
+	// what select needs to follow the plan
+	private Vector<Index> indices = new Vector<Index>();
+	private Vector<Integer> pageIdxs = new Vector<Integer>();
+	private Bitmap rowIds;
+
+	/**
+	 * @return bitmap, coveringIndex, index, indexIntersection, clusteringKey or scan
+	 */
+	public String getAccessPath() {
+		return accessPath;
+	}
+
+	/**
+	 * @return the type, id and columns of the indices used, null if none is used
+	 */
+	public String getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the cells of the index (slots of a hash index) selected by the terms
+	 */
+	public int getCells() {
+		return cells;
+	}
+
+	public int getTotalCells() {
+		return totalCells;
+	}
+
+	/**
+	 * @return the buckets of the selected cells, the overflow buckets of a hash
+	 *         index aren't counted
+	 */
+	public int getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * @return the estimated references read from the index, or left after
+	 *         intersecting those of several indices
+	 */
+	public int getEstimatedReferences() {
+		return references;
+	}
+
+	/**
+	 * @return the pages expected to be read
+	 */
+	public int getEstimatedPages() {
+		return pages;
+	}
+
+	public int getTotalPages() {
+		return totalPages;
+	}
+
+	/**
+	 * @return the rows expected to match the terms, estimated from the statistics
+	 *         gathered by analyze, -1 if the table was never analyzed
+	 */
+	public long getEstimatedRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the pages and buckets expected to be read, plus a hundredth for each
+	 *         tuple checked against the terms
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	/**
+	 * @return the terms not narrowed down by the access path, checked on every
+	 *         tuple read
+	 */
+	public Vector<String> getResidualPredicates() {
+		return residualPredicates;
+	}
+
+	void setAccessPath(String accessPath) {
+		this.accessPath = accessPath;
+	}
+
+	/**
+	 * called by the index used with the part of it the terms select
+	 */
+	void setIndex(String index, int cells, int totalCells, int buckets, int references) {
+		this.index = index;
+		this.cells = cells;
+		this.totalCells = totalCells;
+		this.buckets = buckets;
+		this.references = references;
+	}
+
+	void setEstimatedReferences(int references) {
+		this.references = references;
+	}
+
+	void setPages(int pages, int totalPages) {
+		this.pages = pages;
+		this.totalPages = totalPages;
+	}
+
+	void setEstimatedRows(long rows) {
+		this.rows = rows;
+	}
+
+	void setCost(double cost) {
+		this.cost = cost;
+	}
+
+	void addResidualPredicate(SQLTerm sqlTerm) {
+		residualPredicates.add(sqlTerm._strColumnName + " " + sqlTerm._strOperator + " " + sqlTerm._objValue);
+	}
+
+	/**
+	 * @return the indices to read, several when their references are intersected
+	 */
+	Vector<Index> getIndices() {
+		return indices;
+	}
+
+	/**
+	 * @return the positions of the pages to read by a scan or through bitmaps
+	 */
+	Vector<Integer> getPageIdxs() {
+		return pageIdxs;
+	}
+
+	/**
+	 * @return the row ids of the matching tuples when bitmaps are used
+	 */
+	Bitmap getRowIds() {
+		return rowIds;
+	}
+
+	void setRowIds(Bitmap rowIds) {
+		this.rowIds = rowIds;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("access path: " + accessPath + "\n");
+		if (index != null) {
+			sb.append("index: " + index + "\n");
+			sb.append("cells: " + cells + " of " + totalCells + ", buckets: " + buckets + ", estimated references: "
+					+ references + "\n");
+		}
+		sb.append("estimated pages: " + pages + " of " + totalPages + "\n");
+		if (rows >= 0) {
+			sb.append("estimated rows: " + rows + "\n");
+		}
+		sb.append("residual predicates: " + (residualPredicates.isEmpty() ? "none" : residualPredicates) + "\n");
+		sb.append(String.format("cost: %.2f", cost)).append("\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,154 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Hashtable;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Appends a line for every select, update and delete of a DBApp taking longer
+ * than the SlowOperationThreshold set in its config, giving its predicates, the access
+ * path and index it used, the pages and buckets it loaded, the rows it examined
+ * and returned and how its time splits between reading files and the rest.
+ * Operations gather these while they run only when the log is enabled
+ */
+public class SlowQueryLog {
+
+	/**
+	 * what an operation did, kept by its transaction so the threads of a parallel
+	 * scan running in it add to it too
+	 */
+	static class Stats {
+
+		private LongAdder pagesRead = new LongAdder(), bucketsRead = new LongAdder();
+		private LongAdder readNanos = new LongAdder(), diskNanos = new LongAdder();
+		private volatile String accessPath;
+		private volatile Index index;
+		private volatile long rowsExamined, rowsReturned;
+
+		/**
+		 * @param obj   the page, bucket or other object read
+		 * @param nanos the time taken to read and deserialize it
+		 */
+		void read(Object obj, long nanos) {
+			if (obj instanceof Page) {
+				pagesRead.increment();
+			} else if (obj instanceof Bucket) {
+				bucketsRead.increment();
+			}
+			readNanos.add(nanos);
+		}
+
+		void diskRead(long nanos) {
+			diskNanos.add(nanos);
+		}
+
+		/**
+		 * @param accessPath how the tuples were found
+		 * @param index      the index used, null if none
+		 */
+		void setAccessPath(String accessPath, Index index) {
+			this.accessPath = accessPath;
+			this.index = index;
+		}
+
+		/**
+		 * @param returned the rows selected, or updated or deleted
+		 */
+		void setRows(long examined, long returned) {
+			rowsExamined = examined;
+			rowsReturned = returned;
+		}
+
+		/**
+		 * @param nanos the time the operation took, what wasn't spent reading files is
+		 *              reported as other: evaluating tuples, writing, waiting for locks
+		 *              and committing
+		 */
+		String toString(long nanos) {
+			long read = readNanos.sum();
+			return "access=" + (accessPath == null ? "none" : accessPath)
+					+ (index == null ? "" : " index=" + index.getClass().getName() + index.getColumns()) + " pages="
+					+ pagesRead.sum() + " buckets=" + bucketsRead.sum() + " examined=" + rowsExamined + " returned="
+					+ rowsReturned + " read=" + millis(read) + " (disk " + millis(diskNanos.sum()) + ") other="
+					+ millis(Math.max(nanos - read, 0));
+		}
+	}
+
+	private long threshold; // nanoseconds, -1 when the log is disabled
+	private String path;
+	private ReentrantLock lock = new ReentrantLock(); // never a monitor, the log is written while holding it
+
+	/**
+	 * @param lngThresholdMillis operations taking at least this long are logged, -1
+	 *                           to disable the log
+	 * @param strPath            the file the log is appended to
+	 */
+	public SlowQueryLog(long lngThresholdMillis, String strPath) {
+		threshold = lngThresholdMillis < 0 ? -1 : lngThresholdMillis * 1000000;
+		path = strPath;
+	}
+
+	/**
+	 * @return new stats for an operation about to start, null if the log is
+	 *         disabled
+	 */
+	Stats newStats() {
+		return threshold < 0 ? null : new Stats();
+	}
+
+	/**
+	 * @return the stats of the operation running on the current thread, null if
+	 *         none are gathered
+	 */
+	static Stats current() {
+		Transaction txn = Transaction.current();
+		return txn != null ? txn.getStats() : null;
+	}
+
+	/**
+	 * logs the operation if it was slow
+	 *
+	 * @param operation  select, update or delete
+	 * @param tableName  the table operated on
+	 * @param predicates the conditions of the operation, only described if it is
+	 *                   logged
+	 * @param stats      what the operation did, null if nothing was gathered
+	 * @param start      the System.nanoTime the operation started at
+	 */
+	void record(String operation, String tableName, Supplier<String> predicates, Stats stats, long start) {
+		long nanos = System.nanoTime() - start;
+		if (stats == null || threshold < 0 || nanos < threshold) {
+			return;
+		}
+		Metrics.increment("slowOperations");
+		String line = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS) + " " + operation + " " + tableName + " " + millis(nanos) + " where "
+				+ predicates.get() + " | " + stats.toString(nanos) + "\n";
+		lock.lock();
+		try (FileWriter fw = new FileWriter(path, true)) {
+			fw.write(line);
+		} catch (IOException e) {
+			e.printStackTrace(); // a failing log doesn't fail the operation
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the column values as equalities joined by the separator
+	 */
+	static String toString(Hashtable<String, Object> htblColNameValue, String separator) {
+		StringBuilder sb = new StringBuilder();
+		for (Entry<String, Object> e : htblColNameValue.entrySet()) {
+			sb.append(sb.length() > 0 ? separator : "").append(e.getKey()).append(" = ").append(e.getValue());
+		}
+		return sb.toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.3f ms", nanos / 1e6);
+	}
+}
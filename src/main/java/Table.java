@@ -1,18 +1,21 @@
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Random;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.atomic.LongAdder;
 
 @SuppressWarnings({ "rawtypes", "unchecked", "unused" })
 public class Table implements Serializable {
@@ -21,12 +24,22 @@ public class Table implements Serializable {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+	private static final LongAdder rowsExamined = Metrics.counter("select.rowsExamined"),
+			rowsReturned = Metrics.counter("select.rowsReturned");
+	private static final double READ_COST = 1, TUPLE_COST = 0.01; // of a page or bucket read and a tuple checked
 	private String tableName, clusteringKeyColumn, clusteringKeyType, path;
-	private int maxPageSize, maxBucketSize, nextPageIdx = 1, indexId = 1;
+	private int maxPageSize, maxBucketSize, nextPageIdx = 1, indexId = 1, nextRowId = 0;
 	private Vector<String> pages;
 	private Vector<Object> maxKey;
+	private Vector<Bitmap> pageRowIds; // row ids of the tuples in each page
+	private Vector<ZoneMap> zoneMaps; // min, max and nulls of every column in each page
+	private Vector<Hashtable<String, BloomFilter>> bloomFilters; // bloom filters of each page by column
+	private Vector<String> bloomColumns; // columns with bloom filters, empty if they are not used
 	private Hashtable<String, String> htblColNameMin, htblColNameMax, htblColNameType;
-	private Vector<GridIndex> indices;
+	private Vector<Index> indices;
+	private Vector<BitmapIndex> bitmapIndices;
+	private TableStatistics statistics; // null until the table is analyzed
+	private transient ParallelScan scan; // of the DBApp which loaded the table
 
 	/*
 	 * Constructor
@@ -61,8 +74,13 @@ public class Table implements Serializable {
 
 		this.pages = new Vector<String>();
 		this.maxKey = new Vector<Object>();
+		this.pageRowIds = new Vector<Bitmap>();
+		this.zoneMaps = new Vector<ZoneMap>();
+		this.bloomFilters = new Vector<Hashtable<String, BloomFilter>>();
+		this.bloomColumns = new Vector<String>();
 
 		indices = new Vector();
+		bitmapIndices = new Vector<BitmapIndex>();
 
 		createDirectories();
 		save();
@@ -83,16 +101,21 @@ public class Table implements Serializable {
 	 */
 	public void insertWithOF(Hashtable<String, Object> htblColNameValue)
 			throws IOException, ClassNotFoundException, DBAppException {
+		Tuple tuple = newTuple(htblColNameValue);
+
 		if (pages.size() == 0) { // first insert so we create a new page and we insert in it blindly
 			Page page = createPage();
-			page.insert(htblColNameValue);
+			page.insert(tuple);
 
 			// adds `page reference` at the end of the pages vector
 			pages.add(tableName + "_" + nextPageIdx + ".class");
+			pageRowIds.add(new Bitmap());
+			pageRowIds.lastElement().add(tuple.getRowId());
+			addPageStats(pages.size() - 1, page);
 
 			// update indices: knowing the page name and that i inserted it in row 0 as this
 			// is the first ever insert
-			for (GridIndex gi : indices) {
+			for (Index gi : indices) {
 				gi.insert(htblColNameValue, tableName + "_" + nextPageIdx + ".class", 0);
 			}
 
@@ -127,25 +150,31 @@ public class Table implements Serializable {
 
 				// inserts the tuple in its position within page and gets the kicked out tuple
 				// if the page was already full
-				Tuple outTuple = page.insert(htblColNameValue, insIdx);
+				Tuple outTuple = page.insert(tuple, insIdx);
+				pageRowIds.get(res).add(tuple.getRowId());
 
 				// updates the max key of the page by getting the last tuple in the sorted page
 				maxKey.set(res, page.getLast().getClusteringKeyValue());
+				setPageStats(res, page);
 
 				String ofPage = null; // for updating the index
 
 				if (outTuple != null) { // if there is a tuple which was kicked out of the full page
+					pageRowIds.get(res).remove(outTuple.getRowId());
 					if (res == pages.size() - 1) { // if last page was the page that kicked out the tuple then create a
 													// new page to insert tuple
 
 						// create a new page and insert blindly
 						Page newPage = createPage();
-						newPage.insert(outTuple.getValues());
+						newPage.insert(outTuple);
 
 						// updates the max key in the table
 						maxKey.add(outTuple.getClusteringKeyValue());
 
 						pages.add(tableName + "_" + nextPageIdx + ".class");
+						pageRowIds.add(new Bitmap());
+						pageRowIds.lastElement().add(outTuple.getRowId());
+						addPageStats(pages.size() - 1, newPage);
 
 						ofPage = tableName + "_" + nextPageIdx + ".class";
 
@@ -156,19 +185,29 @@ public class Table implements Serializable {
 
 						if (!nextPage.isFull()) { // if next page contains a free space then insert at the beginning of
 													// the page
-							nextPage.insert(outTuple.getValues(), 0);
+							nextPage.insert(outTuple, 0);
+							pageRowIds.get(res + 1).add(outTuple.getRowId());
+							setPageStats(res + 1, nextPage);
 
 							ofPage = pages.get(res + 1);
+
+							// references to the next page are shifted by the kicked out tuple
+							for (Index gi : indices) {
+								gi.increment(ofPage, 0, null, maxPageSize);
+							}
 						} else { // if next page is full then create an overflow page to insert the kicked out
 									// tuple
 
 							// create new page and insert in it blindly
 							Page newPage = createPage();
-							newPage.insert(outTuple.getValues());
+							newPage.insert(outTuple);
 
 							// update the max key table
 							maxKey.add(res + 1, outTuple.getClusteringKeyValue());
 							pages.add(res + 1, tableName + "_" + nextPageIdx + ".class");
+							pageRowIds.add(res + 1, new Bitmap());
+							pageRowIds.get(res + 1).add(outTuple.getRowId());
+							addPageStats(res + 1, newPage);
 
 							ofPage = tableName + "_" + nextPageIdx + ".class";
 
@@ -178,7 +217,7 @@ public class Table implements Serializable {
 				}
 
 				// updates the indices
-				for (GridIndex gi : indices) {
+				for (Index gi : indices) {
 					// loop over all buckets in index and whenever matching page is found with row
 					// >= insIdx then increment by one
 					gi.increment(pages.get(res), insIdx, ofPage, maxPageSize);
@@ -189,11 +228,13 @@ public class Table implements Serializable {
 				// load last page in table
 				Page page = getPage(pages.size() - 1);
 				if (!page.isFull()) { // if page has empty space then insert at its end and update maxKey
-					page.insert(htblColNameValue);
+					page.insert(tuple);
+					pageRowIds.lastElement().add(tuple.getRowId());
+					setPageStats(pages.size() - 1, page);
 
 					// update indices: knowing that the tuple is inserted in the last page and in
 					// the last row
-					for (GridIndex gi : indices) {
+					for (Index gi : indices) {
 						gi.insert(htblColNameValue, pages.get(pages.size() - 1), page.getSize() - 1);
 					}
 
@@ -201,11 +242,14 @@ public class Table implements Serializable {
 				} else { // if last page is full then create a new page at the end and insert tuple in it
 							// blindly
 					Page newPage = createPage();
-					newPage.insert(htblColNameValue);
+					newPage.insert(tuple);
 					pages.add(tableName + "_" + nextPageIdx + ".class");
+					pageRowIds.add(new Bitmap());
+					pageRowIds.lastElement().add(tuple.getRowId());
+					addPageStats(pages.size() - 1, newPage);
 
 					// update indices
-					for (GridIndex gi : indices) {
+					for (Index gi : indices) {
 						gi.insert(htblColNameValue, tableName + "_" + nextPageIdx + ".class", 0);
 					}
 
@@ -215,6 +259,15 @@ public class Table implements Serializable {
 			}
 		}
 
+		// the row id of a tuple never changes so bitmap indices don't care where it
+		// was inserted
+		for (BitmapIndex bi : bitmapIndices) {
+			bi.insert(htblColNameValue, tuple.getRowId());
+		}
+		if (statistics != null) {
+			statistics.insert(htblColNameValue);
+		}
+
 		// saves the table to disk after every insert
 		save();
 	}
@@ -247,20 +300,48 @@ public class Table implements Serializable {
 			}
 		}
 
+		// the bloom filter on the clustering key tells if the tuple is missing without
+		// loading the page
+		if (res != -1 && !mightContain(res, clusteringKeyColumn, clusteringKeyValue)) {
+			res = -1;
+		}
+
+		SlowQueryLog.Stats stats = SlowQueryLog.current();
+		if (stats != null) {
+			stats.setAccessPath("clusteringKey", null);
+		}
+
 		if (res != -1) { // if page index is found then load it to memory and update it
 			Page page = getPage(res);
 
 			Tuple tuple = page.getTuple(clusteringKeyValue); // gets tuple before update
-			for (GridIndex gi : indices) { // remove references of old tuple from indices
+			if (stats != null) {
+				stats.setRows(1, tuple != null ? 1 : 0);
+			}
+			if (tuple == null) {
+				System.out.println("No such record exist");
+				return;
+			}
+			for (Index gi : indices) { // remove references of old tuple from indices
 				gi.remove(tuple.getValues());
 			}
+			for (BitmapIndex bi : bitmapIndices) {
+				bi.remove(tuple.getValues(), tuple.getRowId());
+			}
 			// update tuple in page and get an instance of updated tuple
 			Tuple updatedTuple = page.update(clusteringKeyValue, htblColNameValue);
 			// update all indices knowing the page name and knowing the position of the
 			// tuple
-			for (GridIndex gi : indices) {
+			for (Index gi : indices) {
 				gi.insert(updatedTuple.getValues(), pages.get(res), page.getIndexOf(clusteringKeyValue));
 			}
+			for (BitmapIndex bi : bitmapIndices) {
+				bi.insert(updatedTuple.getValues(), updatedTuple.getRowId());
+			}
+			if (statistics != null) {
+				statistics.update(tuple.getValues(), updatedTuple.getValues());
+			}
+			setPageStats(res, page);
 
 			save();
 		} else { // if not then no tuple exists with this clustering key
@@ -278,6 +359,7 @@ public class Table implements Serializable {
 	 */
 
 	public void deleteBS(Hashtable<String, Object> htblColNameValue) throws IOException, ClassNotFoundException {
+		SlowQueryLog.Stats stats = SlowQueryLog.current();
 		if (htblColNameValue.containsKey(clusteringKeyColumn)) { // do binary search if clustering key value is provided
 			// binary search using clustering key value
 			int lo = 0, hi = pages.size() - 1, res = -1;
@@ -293,39 +375,62 @@ public class Table implements Serializable {
 				}
 			}
 
+			if (res != -1 && !mightContain(res, clusteringKeyColumn, value)) { // the bloom filter rules the page out
+				res = -1;
+			}
+
 			if (res != -1) { // a page that should contain the tuple exists
 				// loag page and delete the tuple in it if it exists
 				Page page = getPage(res);
-				page.delete(htblColNameValue.get(clusteringKeyColumn), htblColNameValue);
+				int row = page.delete(htblColNameValue.get(clusteringKeyColumn), htblColNameValue);
+				if (stats != null) {
+					stats.setRows(1, row != -1 ? 1 : 0);
+				}
+
+				// removes the reference of the deleted tuple from the indices
+				if (row != -1) {
+					afterDelete(res, page);
+					TreeMap<String, LinkedList<Integer>> deletedPageNameRows = new TreeMap<String, LinkedList<Integer>>();
+					deletedPageNameRows.put(pages.get(res), new LinkedList<Integer>());
+					deletedPageNameRows.get(pages.get(res)).add(row);
+					for (Index gi : indices) {
+						gi.delete(deletedPageNameRows);
+					}
+					save();
+				}
 
 				// if page becomes empty after deletion then delete the page from disk
 				if (page.isEmpty()) {
 					deletePages(res, 1);
 				}
 			}
+			if (stats != null) {
+				stats.setAccessPath("clusteringKey", null);
+			}
 		} else { // do linear search
 
-			// pick the best grid index to use based on columns in index
-			GridIndex gridIndex = null;
-			int max = 0;
-			for (GridIndex gi : indices) {
-				int score = 0;
-				for (String colName : htblColNameValue.keySet()) {
-					score += gi.getColumns().contains(colName) ? 1 : 0;
-				}
-				if (score > max) {
-					max = score;
-					gridIndex = gi;
-				}
-			}
+			// plan the delete as a select of the criteria, which are equalities joined by
+			// AND
+			SQLTerm[] sqlTerms = toSQLTerms(htblColNameValue);
+			String[] ops = new String[Math.max(sqlTerms.length - 1, 0)];
+			Arrays.fill(ops, "AND");
+			QueryPlan plan = plan(sqlTerms, ops, null);
+			Index index = plan.getIndices().isEmpty() ? null : plan.getIndices().firstElement();
 
-			// if (gridIndex == null) {
-			// System.out.println("NO INDEX USED IN DELETE");
-			// }
+			if (stats != null) {
+				stats.setAccessPath(plan.getAccessPath(), index);
+			}
+			long examined = 0, deletedRows = 0;
 
-			if (gridIndex != null) {
+			if (index != null) {
 
-				TreeMap<String, LinkedList<Integer>> pageNameRows = gridIndex.get(htblColNameValue);
+				TreeMap<String, LinkedList<Integer>> pageNameRows = null;
+				for (Index idx : plan.getIndices()) {
+					Events.IndexProbe probe = Events.IndexProbe.start(tableName, idx);
+					TreeMap<String, LinkedList<Integer>> refs = idx.get(htblColNameValue);
+					probe.end(refs);
+					pageNameRows = pageNameRows == null ? refs : intersect(pageNameRows, refs);
+				}
 
 				// loop over all pairs supplied
 				TreeMap<String, LinkedList<Integer>> deletedPageNameRows = new TreeMap<String, LinkedList<Integer>>();
@@ -335,83 +440,440 @@ public class Table implements Serializable {
 					// System.out.print(e.getValue() + "\n");
 					Page page = getPage(pageName);
 					LinkedList<Integer> deleted = page.deleteAllIndices(e.getValue(), htblColNameValue);
+					examined += e.getValue().size();
+					deletedRows += deleted.size();
 					if (deleted.size() > 0) {
 						deletedPageNameRows.put(pageName, deleted);
+						afterDelete(pages.indexOf(pageName), page);
 					}
 					if (page.isEmpty()) {
 						deletePage(pageName);
 					}
 				}
-				for (GridIndex gi : indices) {
+				for (Index gi : indices) {
 					gi.delete(deletedPageNameRows);
 				}
 				save();
 			} else { // insted of loading buckets and pages, just linear search and load pages only
 
-				// loop over available pages
-				for (int i = 0; i < pages.size(); ++i) {
-					// load page to memory
+				// skip pages whose ranges, bloom filters or bitmaps can't hold the values
+				Vector<Integer> candidates = plan.getPageIdxs();
+
+				// pages are loaded and searched concurrently, only those holding matching
+				// tuples are kept
+				LongAdder scanned = new LongAdder();
+				Vector<Page> loaded = getScan().map(candidates, i -> {
 					Page page = getPage(i);
+					scanned.add(page.getSize());
+					for (Tuple t : page.getTuples()) {
+						if (checkTuple(t, sqlTerms, ops)) {
+							return page;
+						}
+					}
+					return null;
+				});
+
+				// deletes from the last page so removing empty pages doesn't shift the
+				// pages left to visit
+				TreeMap<String, LinkedList<Integer>> deletedPageNameRows = new TreeMap<String, LinkedList<Integer>>();
+				for (int c = candidates.size() - 1; c >= 0; --c) {
+					Page page = loaded.get(c);
+					if (page == null) {
+						continue;
+					}
+					int i = candidates.get(c);
 
 					// delete tuples in page with corresponding values
-					page.delete(htblColNameValue);
+					LinkedList<Integer> deleted = page.delete(htblColNameValue);
+					deletedRows += deleted.size();
+					if (deleted.size() > 0) {
+						deletedPageNameRows.put(pages.get(i), deleted);
+						afterDelete(i, page);
+					}
 
 					// if page becomes empty after deletion then delete the page from disk
 					if (page.isEmpty()) {
 						deletePages(i, 1);
-						i--;
 					}
 				}
+
+				// indices on other columns still reference the deleted tuples
+				if (!deletedPageNameRows.isEmpty()) {
+					for (Index gi : indices) {
+						gi.delete(deletedPageNameRows);
+					}
+					save();
+				}
+				examined = scanned.sum();
+			}
+			if (stats != null) {
+				stats.setRows(examined, deletedRows);
 			}
 		}
 	}
 
 	public Iterator select(SQLTerm[] sqlTerms, String[] ops, Hashtable<String, String> htblColNameType)
 			throws IOException, ClassNotFoundException {
+		return selectTuples(sqlTerms, ops, null, null, false, Integer.MAX_VALUE).listIterator();
+	}
+
+	/**
+	 * selects only the passed columns of the tuples matching the terms. If an index
+	 * stores the values of all columns used, the pages are never loaded
+	 * 
+	 * @param sqlTerms       the terms of the select statement
+	 * @param ops            the operators between the terms
+	 * @param strarrColNames the columns to be returned
+	 * @return an iterator over the projected tuples
+	 * @throws IOException            when I/O failure occurs
+	 * @throws ClassNotFoundException when loading fails
+	 */
+	public Iterator select(SQLTerm[] sqlTerms, String[] ops, String[] strarrColNames)
+			throws IOException, ClassNotFoundException {
+		return selectTuples(sqlTerms, ops, strarrColNames, null, false, Integer.MAX_VALUE).listIterator();
+	}
 
-		int max = 0;
-		GridIndex indexToUse = null;
-		for (GridIndex gi : indices) {
-			int score = 0;
+	/**
+	 * selects at most limit tuples matching the terms, ordered by a column. Ordered
+	 * by the clustering key, or not ordered, pages are read in key order until
+	 * enough tuples are found, other orders keep the top tuples in a heap of limit
+	 * of them while reading all matching ones
+	 * 
+	 * @param sqlTerms       the terms of the select statement
+	 * @param ops            the operators between the terms
+	 * @param strarrColNames the columns to be returned, null for whole tuples
+	 * @param strOrderBy     the column to order the tuples by, null for any order
+	 * @param descending     order from the largest value, nulls always come last
+	 * @param limit          the most tuples to be returned
+	 * @return an iterator over the tuples
+	 * @throws IOException            when I/O failure occurs
+	 * @throws ClassNotFoundException when loading fails
+	 */
+	public Iterator select(SQLTerm[] sqlTerms, String[] ops, String[] strarrColNames, String strOrderBy,
+			boolean descending, int limit) throws IOException, ClassNotFoundException {
+		return selectTuples(sqlTerms, ops, strarrColNames, strOrderBy, descending, limit).listIterator();
+	}
+
+	/**
+	 * @return the number of tuples matching the terms
+	 */
+	public int count(SQLTerm[] sqlTerms, String[] ops) throws IOException, ClassNotFoundException {
+		Bitmap rowIds = getBitmap(sqlTerms, ops);
+		if (rowIds != null) {
+			Metrics.increment("select.plan.bitmap");
+			return rowIds.getCardinality();
+		}
+		return selectTuples(sqlTerms, ops, new String[0], null, false, Integer.MAX_VALUE).size();
+	}
+
+	/**
+	 * @return true if any tuple matches the terms
+	 */
+	public boolean exists(SQLTerm[] sqlTerms, String[] ops) throws IOException, ClassNotFoundException {
+		Bitmap rowIds = getBitmap(sqlTerms, ops);
+		if (rowIds != null) {
+			Metrics.increment("select.plan.bitmap");
+			return !rowIds.isEmpty();
+		}
+		return !selectTuples(sqlTerms, ops, new String[0], null, false, 1).isEmpty();
+	}
+
+	/**
+	 * works out the plan select would follow without loading pages or buckets
+	 *
+	 * @param strarrColNames the columns to be returned, null for whole tuples
+	 */
+	public QueryPlan explain(SQLTerm[] sqlTerms, String[] ops, String[] strarrColNames) {
+		return plan(sqlTerms, ops, strarrColNames);
+	}
+
+	/**
+	 * @param strarrColNames the columns to be returned, null for whole tuples
+	 * @param strOrderBy     the column to order the tuples by, null for any order
+	 * @param limit          the most tuples to be returned
+	 */
+	private LinkedList<Tuple> selectTuples(SQLTerm[] sqlTerms, String[] ops, String[] strarrColNames,
+			String strOrderBy, boolean descending, int limit) throws IOException, ClassNotFoundException {
+		Events.QueryExecuted event = new Events.QueryExecuted();
+		event.begin();
+		LongAdder examined = new LongAdder(); // tuples checked against the terms
+		ResultSet rs = new ResultSet(strarrColNames, strOrderBy, descending, limit);
+		String accessPath = select(sqlTerms, ops, rs, examined);
+		LinkedList<Tuple> ll = rs.finish();
+		Metrics.increment("select.plan." + accessPath);
+		rowsExamined.add(examined.sum());
+		rowsReturned.add(ll.size());
+		SlowQueryLog.Stats stats = SlowQueryLog.current();
+		if (stats != null) {
+			stats.setRows(examined.sum(), ll.size());
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.table = tableName;
+			event.query = Events.QueryExecuted.toString(sqlTerms, ops);
+			event.accessPath = accessPath;
+			event.rowsExamined = examined.sum();
+			event.rowsReturned = ll.size();
+			event.commit();
+		}
+		return ll;
+	}
+
+	/**
+	 * the tuples a select returns: the first ones found up to the limit, or the top
+	 * ones by a column kept in a heap bounded by the limit
+	 */
+	private class ResultSet {
+
+		private String strarrColNames[], strOrderBy;
+		private boolean descending;
+		private int limit;
+		private Comparator<Tuple> order; // null unless sorting
+		private PriorityQueue<Tuple> heap; // the last of the top tuples first
+		private LinkedList<Tuple> ll = new LinkedList<Tuple>();
+
+		ResultSet(String[] strarrColNames, String strOrderBy, boolean descending, int limit) {
+			this.strarrColNames = strarrColNames;
+			this.strOrderBy = strOrderBy;
+			this.descending = descending;
+			this.limit = limit;
+		}
+
+		/**
+		 * starts collecting the tuples of an access path
+		 * 
+		 * @param keyOrder whether the path finds the tuples in clustering key order
+		 */
+		void start(boolean keyOrder) {
+			if (strOrderBy == null || (keyOrder && strOrderBy.equals(clusteringKeyColumn))) {
+				return;
+			}
+			Comparator<Object> ascending = (a, b) -> ((Comparable) a).compareTo(b);
+			Comparator<Object> byValue = Comparator.nullsLast(descending ? ascending.reversed() : ascending);
+			order = (a, b) -> byValue.compare(a.getValue(strOrderBy), b.getValue(strOrderBy));
+			heap = new PriorityQueue<Tuple>(Math.min(limit, 1024), order.reversed());
+		}
+
+		/**
+		 * @return whether the tuples are read from the last page backwards
+		 */
+		boolean backwards() {
+			return order == null && descending && strOrderBy != null;
+		}
+
+		/**
+		 * @return whether enough tuples can be found before reading all matching ones
+		 */
+		boolean stopsEarly() {
+			return order == null && limit < Integer.MAX_VALUE
+					&& (strOrderBy == null || strOrderBy.equals(clusteringKeyColumn));
+		}
+
+		/**
+		 * @return true once no more tuples are needed
+		 */
+		boolean add(Tuple t) {
+			if (order == null) {
+				ll.add(project(t, strarrColNames));
+				return ll.size() >= limit;
+			}
+			if (heap.size() < limit) {
+				heap.add(t);
+			} else if (order.compare(t, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(t);
+			}
+			return false;
+		}
+
+		LinkedList<Tuple> finish() {
+			if (order != null) {
+				while (!heap.isEmpty()) {
+					ll.addFirst(project(heap.poll(), strarrColNames));
+				}
+			}
+			return ll;
+		}
+
+		/**
+		 * @return the columns decoded from the pages, null for whole tuples
+		 */
+		HashSet<String> getColNames(SQLTerm[] sqlTerms) {
+			if (strarrColNames == null) {
+				return null;
+			}
+			HashSet<String> colNames = new HashSet<String>(Arrays.asList(strarrColNames));
 			for (SQLTerm sqlTerm : sqlTerms) {
-				score += gi.getColumns().contains(sqlTerm._strColumnName) ? 1 : 0;
+				colNames.add(sqlTerm._strColumnName);
 			}
-			if (score > max) {
-				max = score;
-				indexToUse = gi;
+			if (strOrderBy != null) {
+				colNames.add(strOrderBy);
 			}
+			return colNames;
 		}
+	}
 
-		LinkedList<Tuple> ll = new LinkedList<Tuple>();
-		if (indexToUse != null) {
-			// use index for select
-			TreeMap<String, LinkedList<Integer>> trmpPageNameRows = indexToUse.select(sqlTerms, ops);
+	/**
+	 * adds the matching tuples to the result set
+	 * 
+	 * @param examined counts the tuples checked against the terms
+	 * @return the access path used, as given by plan
+	 */
+	private String select(SQLTerm[] sqlTerms, String[] ops, ResultSet rs, LongAdder examined)
+			throws IOException, ClassNotFoundException {
+
+		// a projection decodes the columns of the pages it returns, checks or orders by
+		// only
+		HashSet<String> colNames = rs.getColNames(sqlTerms);
+		QueryPlan plan = plan(sqlTerms, ops, colNames == null ? null : colNames.toArray(new String[0]),
+				rs.stopsEarly() ? rs.limit : Integer.MAX_VALUE);
+		String accessPath = plan.getAccessPath();
+		Index index = plan.getIndices().isEmpty() ? null : plan.getIndices().firstElement();
+		SlowQueryLog.Stats stats = SlowQueryLog.current();
+		if (stats != null) {
+			stats.setAccessPath(accessPath, index);
+		}
+
+		if (plan.getRowIds() != null) {
+			// terms on bitmap indexed columns only are resolved with bitwise operations on
+			// the row ids, pages holding none of them are never loaded
+			rs.start(true);
+			for (int i : inOrder(plan.getPageIdxs(), rs.backwards())) {
+				Bitmap pageHits = plan.getRowIds().and(pageRowIds.get(i));
+				for (Tuple t : inOrder(getPage(i).getTuples(colNames), rs.backwards())) {
+					examined.increment();
+					if (pageHits.contains(t.getRowId()) && rs.add(t)) {
+						return accessPath;
+					}
+				}
+			}
+		} else if (accessPath.equals("coveringIndex")) {
+			// a projection on columns whose values are stored in an index is answered
+			// using the index entries only
+			rs.start(false);
+			Events.IndexProbe probe = Events.IndexProbe.start(tableName, index);
+			Vector<Bucket.Pair> entries = index.getEntries(sqlTerms, ops);
+			probe.end(entries.size());
+			for (Bucket.Pair pair : entries) {
+				Tuple t = new Tuple(clusteringKeyColumn);
+				for (Entry<String, Object> e : pair.getValues().entrySet()) {
+					t.setValue(e.getKey(), e.getValue());
+				}
+				examined.increment();
+				if (checkTuple(t, sqlTerms, ops) && rs.add(t)) {
+					return accessPath;
+				}
+			}
+		} else if (index != null) {
+			// use the index, or the references found in every index for an intersection
+			rs.start(false);
+			TreeMap<String, LinkedList<Integer>> trmpPageNameRows = null;
+			for (Index idx : plan.getIndices()) {
+				Events.IndexProbe probe = Events.IndexProbe.start(tableName, idx);
+				TreeMap<String, LinkedList<Integer>> pageNameRows = idx.select(sqlTerms, ops);
+				probe.end(pageNameRows);
+				trmpPageNameRows = trmpPageNameRows == null ? pageNameRows : intersect(trmpPageNameRows, pageNameRows);
+			}
 			for (Entry<String, LinkedList<Integer>> e : trmpPageNameRows.entrySet()) {
-				String pageName = e.getKey();
-				Page page = getPage(pageName);
+				Vector<Tuple> tuples = getPage(e.getKey()).getTuples(colNames);
 				for (Integer pos : e.getValue()) {
-					Tuple t = page.getTupleAt(pos);
-					if (checkTuple(t, sqlTerms, ops)) {
-						ll.add(t);
+					Tuple t = tuples.get(pos);
+					examined.increment();
+					if (checkTuple(t, sqlTerms, ops) && rs.add(t)) {
+						return accessPath;
 					}
 				}
 			}
 		} else {
-			// should binary search if have clustering key
-
-			for (int i = 0; i < pages.size(); ++i) {
-				Page page = getPage(i);
-
-				for (Tuple t : page.getTuples()) {
-					if (checkTuple(t, sqlTerms, ops)) {
-						ll.add(t);
+			// pages outside the range of the clustering key or whose ranges can't satisfy
+			// the terms are never loaded
+			rs.start(true);
+			Vector<Integer> candidates = plan.getPageIdxs();
+
+			if (rs.stopsEarly()) {
+				// read in key order until enough tuples are found
+				for (int i : inOrder(candidates, rs.backwards())) {
+					for (Tuple t : inOrder(getPage(i).getTuples(colNames), rs.backwards())) {
+						examined.increment();
+						if (checkTuple(t, sqlTerms, ops) && rs.add(t)) {
+							return accessPath;
+						}
+					}
+				}
+			} else {
+				// the pages are filtered concurrently, results stay in page order
+				for (LinkedList<Tuple> matches : inOrder(getScan().map(candidates, i -> {
+					LinkedList<Tuple> res = new LinkedList<Tuple>();
+					Vector<Tuple> tuples = getPage(i).getTuples(colNames);
+					examined.add(tuples.size());
+					for (Tuple t : tuples) {
+						if (checkTuple(t, sqlTerms, ops)) {
+							res.add(t);
+						}
+					}
+					return res;
+				}), rs.backwards())) {
+					for (Tuple t : inOrder(matches, rs.backwards())) {
+						rs.add(t);
 					}
 				}
 			}
 
 		}
+		return accessPath;
+	}
+
+	/**
+	 * @return the elements in their order, or from the last one backwards
+	 */
+	private static <T> List<T> inOrder(List<T> list, boolean backwards) {
+		if (!backwards) {
+			return list;
+		}
+		LinkedList<T> res = new LinkedList<T>();
+		for (T t : list) {
+			res.addFirst(t);
+		}
+		return res;
+	}
+
+	/**
+	 * @return the references of the first map also found in the second, in the
+	 *         order of the first
+	 */
+	private static TreeMap<String, LinkedList<Integer>> intersect(TreeMap<String, LinkedList<Integer>> a,
+			TreeMap<String, LinkedList<Integer>> b) {
+		TreeMap<String, LinkedList<Integer>> res = new TreeMap<String, LinkedList<Integer>>();
+		for (Entry<String, LinkedList<Integer>> e : a.entrySet()) {
+			if (!b.containsKey(e.getKey())) {
+				continue;
+			}
+			HashSet<Integer> rows = new HashSet<Integer>(b.get(e.getKey()));
+			LinkedList<Integer> common = new LinkedList<Integer>();
+			for (int row : e.getValue()) {
+				if (rows.contains(row)) {
+					common.add(row);
+				}
+			}
+			if (!common.isEmpty()) {
+				res.put(e.getKey(), common);
+			}
+		}
+		return res;
+	}
 
-		return ll.listIterator();
+	private Tuple project(Tuple t, String[] strarrColNames) {
+		if (strarrColNames == null) {
+			return t;
+		}
+		Tuple res = new Tuple(clusteringKeyColumn);
+		for (String colName : strarrColNames) {
+			if (t.getValue(colName) != null) {
+				res.setValue(colName, t.getValue(colName));
+			}
+		}
+		return res;
 	}
 
 	private boolean checkTuple(Tuple t, SQLTerm sqlTerms[], String ops[]) {
@@ -556,60 +1018,652 @@ public class Table implements Serializable {
 
 	public void createIndex(String[] strarrColNames)
 			throws DBAppException, ClassNotFoundException, IOException, ParseException {
+		createIndex(strarrColNames, null);
+	}
+
+	/**
+	 * creates a grid index on the passed columns
+	 * 
+	 * @param strarrColNames         the columns to be indexed
+	 * @param strarrIncludedColNames the columns whose values are stored in the
+	 *                               index to make it covering, null for a normal
+	 *                               index
+	 */
+	public void createIndex(String[] strarrColNames, String[] strarrIncludedColNames)
+			throws DBAppException, ClassNotFoundException, IOException, ParseException {
 		// creates a new instance of the grid index
-		GridIndex gridIdx = new GridIndex(strarrColNames, htblColNameType, htblColNameMin, htblColNameMax,
-				maxBucketSize, indexId++, path);
+		GridIndex gridIdx = new GridIndex(strarrColNames, strarrIncludedColNames, htblColNameType, htblColNameMin,
+				htblColNameMax, maxBucketSize, indexId++, path);
 
 		// adds the instance to the list of indices available
 		indices.add(gridIdx);
 
 		// inserts all tuples present in table into the index to handle index creation
 		// after inserting into table
+		gridIdx.load(scanForIndex(gridIdx));
+
+		// saves the table to remember index later
+		save();
+	}
+
+	/**
+	 * starts building a grid index on the passed columns while writes go on, from
+	 * now on the changes to the table are recorded until the build completes
+	 *
+	 * @param strarrColNames         the columns to be indexed
+	 * @param strarrIncludedColNames the columns whose values are stored in the
+	 *                               index to make it covering, null for a normal
+	 *                               index
+	 * @return the build which is completed by completeIndexBuild
+	 */
+	public IndexBuild startIndexBuild(String[] strarrColNames, String[] strarrIncludedColNames)
+			throws DBAppException, ParseException, IOException {
+		IndexBuild build = new IndexBuild(new GridIndex(strarrColNames, strarrIncludedColNames, htblColNameType,
+				htblColNameMin, htblColNameMax, maxBucketSize, indexId++, path));
+		indices.add(build);
+		save();
+		return build;
+	}
+
+	/**
+	 * groups the references to all tuples of the table by the cell of the index
+	 * they fall in, pages are scanned concurrently and no bucket is touched
+	 *
+	 * @param gridIdx the index to group by
+	 * @return the cells mapped to the references falling in them
+	 */
+	public TreeMap<Integer, Vector<GridIndex.Ref>> scanForIndex(GridIndex gridIdx)
+			throws IOException, ClassNotFoundException {
+		Vector<Integer> pageIdxs = new Vector<Integer>();
+		for (int i = 0; i < pages.size(); ++i) {
+			pageIdxs.add(i);
+		}
+		return GridIndex.merge(getScan().map(pageIdxs, i -> gridIdx.group(pages.get(i), getPage(i))));
+	}
+
+	/**
+	 * brings the scanned references up to date with the changes recorded since the
+	 * build started and makes the index usable by queries
+	 *
+	 * @param buildId the id of the build
+	 * @param cells   the references found by scanForIndex when the build started,
+	 *                null to drop the build
+	 * @throws DBAppException when the build isn't running on the table
+	 */
+	public void completeIndexBuild(long buildId, TreeMap<Integer, Vector<GridIndex.Ref>> cells)
+			throws DBAppException, IOException {
+		for (int i = 0; i < indices.size(); ++i) {
+			if (indices.get(i) instanceof IndexBuild && ((IndexBuild) indices.get(i)).getId() == buildId) {
+				IndexBuild build = (IndexBuild) indices.get(i);
+				if (cells == null) {
+					indices.remove(i);
+				} else {
+					build.catchUp(cells);
+					build.getIndex().load(cells);
+					indices.set(i, build.getIndex());
+				}
+				save();
+				return;
+			}
+		}
+		throw new DBAppException("Couldn't complete index creation on table `" + tableName
+				+ "` as the build was abandoned.");
+	}
+
+	/**
+	 * creates a hash index on the passed columns, usable for equality criteria on
+	 * all of them
+	 * 
+	 * @param strarrColNames the columns to be hashed
+	 * @throws ClassNotFoundException when loading pages fails
+	 * @throws IOException            when I/O failure occurs
+	 */
+	public void createHashIndex(String[] strarrColNames) throws ClassNotFoundException, IOException {
+		createHashIndex(strarrColNames, new String[0]);
+	}
+
+	/**
+	 * creates a hash index on the passed columns which also stores the values of
+	 * the included columns
+	 * 
+	 * @param strarrColNames         the columns to be hashed
+	 * @param strarrIncludedColNames the columns whose values are stored in the
+	 *                               index
+	 * @throws ClassNotFoundException when loading pages fails
+	 * @throws IOException            when I/O failure occurs
+	 */
+	public void createHashIndex(String[] strarrColNames, String[] strarrIncludedColNames)
+			throws ClassNotFoundException, IOException {
+		HashIndex hashIdx = new HashIndex(strarrColNames, strarrIncludedColNames, maxBucketSize, indexId++, path);
+		indices.add(hashIdx);
+
+		// inserts all tuples present in table into the index
 		for (int i = 0; i < pages.size(); ++i) {
 			Page page = getPage(i);
 
 			int row = 0;
 			for (Tuple t : page.getTuples()) {
-				gridIdx.insert(t.getValues(), pages.get(i), row++);
+				hashIdx.insert(t.getValues(), pages.get(i), row++);
+			}
+		}
+
+		save();
+	}
+
+	/**
+	 * creates a bitmap index on the passed columns, meant for columns with few
+	 * distinct values
+	 * 
+	 * @param strarrColNames the columns to be indexed
+	 * @throws ClassNotFoundException when loading pages fails
+	 * @throws IOException            when I/O failure occurs
+	 */
+	public void createBitmapIndex(String[] strarrColNames) throws ClassNotFoundException, IOException {
+		BitmapIndex bitmapIdx = new BitmapIndex(strarrColNames, indexId++);
+		bitmapIndices.add(bitmapIdx);
+
+		// inserts all tuples present in table into the index
+		for (int i = 0; i < pages.size(); ++i) {
+			for (Tuple t : getPage(i).getTuples()) {
+				bitmapIdx.insert(t.getValues(), t.getRowId());
 			}
 		}
 
-		// saves the table to remember index later
 		save();
 	}
 
+	/**
+	 * keeps a bloom filter per page on the clustering key and the passed columns,
+	 * used to skip loading pages that don't hold a value in updates, deletes and
+	 * selects with equality terms
+	 * 
+	 * @param strarrColNames the columns to keep bloom filters on besides the
+	 *                       clustering key
+	 * @throws ClassNotFoundException when loading pages fails
+	 * @throws IOException            when I/O failure occurs
+	 */
+	public void createBloomFilters(String[] strarrColNames) throws ClassNotFoundException, IOException {
+		if (!bloomColumns.contains(clusteringKeyColumn)) {
+			bloomColumns.add(clusteringKeyColumn);
+		}
+		for (String colName : strarrColNames) {
+			if (!bloomColumns.contains(colName)) {
+				bloomColumns.add(colName);
+			}
+		}
+
+		for (int i = 0; i < pages.size(); ++i) {
+			bloomFilters.set(i, getBloomFilters(getPage(i)));
+		}
+
+		save();
+	}
+
+	/**
+	 * gathers the statistics of the columns from the pages, or from a random part of
+	 * them, replacing those gathered before
+	 *
+	 * @param fraction the fraction of the pages to scan, at least one is scanned
+	 * @return the new statistics
+	 */
+	public TableStatistics analyze(double fraction) throws ClassNotFoundException, IOException {
+		TableStatistics res = new TableStatistics(htblColNameType.keySet());
+		Random random = new Random();
+		long rows = 0, scanned = 0;
+		for (int i = 0; i < pages.size(); ++i) {
+			rows += pageRowIds.get(i).getCardinality();
+		}
+		for (int i = 0; i < pages.size(); ++i) {
+			if (fraction < 1 && random.nextDouble() >= fraction && (scanned > 0 || i < pages.size() - 1)) {
+				continue;
+			}
+			for (Tuple t : getPage(i).getTuples()) {
+				res.scan(t);
+				scanned++;
+			}
+		}
+		res.finish(rows, rows == 0 ? 1 : scanned / (double) rows);
+		statistics = res;
+		save();
+		return res;
+	}
+
+	/**
+	 * @return the statistics gathered by analyze and kept current since, null if the
+	 *         table was never analyzed
+	 */
+	public TableStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @param scan the pool scanning the pages of the table in parallel
+	 */
+	void setScan(ParallelScan scan) {
+		this.scan = scan;
+	}
+
+	private ParallelScan getScan() {
+		return scan != null ? scan : ParallelScan.SEQUENTIAL;
+	}
+
 	/*
 	 * HELPER METHODS
 	 */
 
+	/**
+	 * combines the bitmaps of the terms using the operators in order, the same way
+	 * checkTuple does
+	 * 
+	 * @return the row ids of the matching tuples or null if some term is not on a
+	 *         bitmap indexed column
+	 */
+	private Bitmap getBitmap(SQLTerm[] sqlTerms, String[] ops) {
+		if (sqlTerms.length == 0) {
+			return null;
+		}
+
+		Bitmap res = null;
+		for (int i = 0; i < sqlTerms.length; ++i) {
+			Bitmap termRowIds = null;
+			for (BitmapIndex bi : bitmapIndices) {
+				if (bi.isOnColumn(sqlTerms[i]._strColumnName)) {
+					termRowIds = bi.get(sqlTerms[i]);
+					break;
+				}
+			}
+			if (termRowIds == null) {
+				return null;
+			}
+
+			if (i == 0) {
+				res = termRowIds;
+			} else {
+				switch (ops[i - 1].toLowerCase()) {
+					case "and":
+						res = res.and(termRowIds);
+						break;
+					case "or":
+						res = res.or(termRowIds);
+						break;
+					case "xor":
+						res = res.xor(termRowIds);
+						break;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * updates the row ids and the stats of the page after deletion and removes the
+	 * deleted row ids from the bitmap indices
+	 * 
+	 * @param pageIdx the position of the page in the table
+	 * @param page    the page after deletion
+	 */
+	private void afterDelete(int pageIdx, Page page) {
+		setPageStats(pageIdx, page);
+
+		Bitmap rowIds = new Bitmap();
+		for (Tuple t : page.getTuples()) {
+			rowIds.add(t.getRowId());
+		}
+		Bitmap deletedRowIds = pageRowIds.get(pageIdx).andNot(rowIds);
+		pageRowIds.set(pageIdx, rowIds);
+
+		for (BitmapIndex bi : bitmapIndices) {
+			bi.removeAll(deletedRowIds);
+		}
+		if (statistics != null) {
+			statistics.delete(deletedRowIds.getCardinality());
+		}
+	}
+
+	/**
+	 * computes the zone map and the bloom filters of a page added to the table
+	 */
+	private void addPageStats(int pageIdx, Page page) {
+		zoneMaps.add(pageIdx, new ZoneMap(page, htblColNameType.keySet()));
+		bloomFilters.add(pageIdx, getBloomFilters(page));
+	}
+
+	/**
+	 * recomputes the zone map and the bloom filters of a changed page, bloom
+	 * filters can't forget values so they are rebuilt as well
+	 */
+	private void setPageStats(int pageIdx, Page page) {
+		zoneMaps.set(pageIdx, new ZoneMap(page, htblColNameType.keySet()));
+		bloomFilters.set(pageIdx, getBloomFilters(page));
+	}
+
+	private Hashtable<String, BloomFilter> getBloomFilters(Page page) {
+		Hashtable<String, BloomFilter> res = new Hashtable<String, BloomFilter>();
+		for (String colName : bloomColumns) {
+			BloomFilter bloomFilter = new BloomFilter(maxPageSize);
+			for (Tuple t : page.getTuples()) {
+				if (t.getValue(colName) != null) {
+					bloomFilter.add(t.getValue(colName));
+				}
+			}
+			res.put(colName, bloomFilter);
+		}
+		return res;
+	}
+
+	/**
+	 * @return false if the page's bloom filter on the column says it doesn't hold
+	 *         the value
+	 */
+	private boolean mightContain(int pageIdx, String colName, Object value) {
+		BloomFilter bloomFilter = bloomFilters.get(pageIdx).get(colName);
+		return bloomFilter == null || bloomFilter.mightContain(value);
+	}
+
+	/**
+	 * checks the zone map of the page and, when the terms are all joined by AND, the
+	 * bloom filters of the columns with equality terms
+	 * 
+	 * @return false only if no tuple in the page can match the terms
+	 */
+	private boolean mayMatch(int pageIdx, SQLTerm[] sqlTerms, String[] ops) {
+		if (!zoneMaps.get(pageIdx).mayMatch(sqlTerms, ops)) {
+			return false;
+		}
+		for (String op : ops) {
+			if (!op.equalsIgnoreCase("and")) {
+				return true;
+			}
+		}
+		for (SQLTerm sqlTerm : sqlTerms) {
+			if (sqlTerm._strOperator.equals("=")
+					&& !mightContain(pageIdx, sqlTerm._strColumnName, sqlTerm._objValue)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return a new tuple holding the passed values with the next row id
+	 */
+	private Tuple newTuple(Hashtable<String, Object> htblColNameValue) {
+		Tuple tuple = new Tuple(clusteringKeyColumn);
+		for (Entry<String, Object> e : htblColNameValue.entrySet()) {
+			tuple.setValue(e.getKey(), e.getValue());
+		}
+		tuple.setRowId(nextRowId++);
+		return tuple;
+	}
+
+	/**
+	 * costs every way of answering the terms from what the table keeps in memory and
+	 * picks the cheapest: scanning the pages the zone maps and bloom filters can't
+	 * rule out within the range of the clustering key the terms allow, the pages
+	 * holding the row ids given by bitmap indices, each usable index on its own or
+	 * covering the projection, and the references found in all usable indices.
+	 * Indices are costed by the buckets of the cells the terms select and the pages
+	 * their references are expected to fall in
+	 *
+	 * @param strarrColNames the columns to be returned, null for whole tuples
+	 */
+	private QueryPlan plan(SQLTerm[] sqlTerms, String[] ops, String[] strarrColNames) {
+		return plan(sqlTerms, ops, strarrColNames, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param limit the tuples after which a select reading pages in key order stops
+	 */
+	private QueryPlan plan(SQLTerm[] sqlTerms, String[] ops, String[] strarrColNames, int limit) {
+		int rows = 0;
+		for (Bitmap rowIds : pageRowIds) {
+			rows += rowIds.getCardinality();
+		}
+
+		// the scan is kept unless another path is cheaper
+		QueryPlan best = new QueryPlan();
+		int range[] = getKeyRange(sqlTerms, ops);
+		boolean keyRange = range[1] - range[0] < pages.size();
+		best.setAccessPath(keyRange ? "clusteringKey" : "scan");
+		int examined = 0;
+		for (int i = range[0]; i < range[1]; ++i) {
+			if (mayMatch(i, sqlTerms, ops)) {
+				best.getPageIdxs().add(i);
+				examined += pageRowIds.get(i).getCardinality();
+			}
+		}
+		// a limited select reads the pages in key order until it finds enough tuples,
+		// which are expected to be spread evenly over the pages holding them
+		double read = 1;
+		if (limit < Integer.MAX_VALUE && statistics != null) {
+			read = Math.min(limit / Math.max(statistics.selectivity(sqlTerms, ops, rows) * rows, 1), 1);
+		}
+		best.setPages((int) Math.ceil(best.getPageIdxs().size() * read), pages.size());
+		best.setCost((best.getPageIdxs().size() * READ_COST + examined * TUPLE_COST) * read);
+		for (SQLTerm sqlTerm : sqlTerms) {
+			if (!keyRange || !boundsKey(sqlTerm)) {
+				best.addResidualPredicate(sqlTerm);
+			}
+		}
+
+		Bitmap rowIds = getBitmap(sqlTerms, ops);
+		if (rowIds != null) {
+			QueryPlan plan = new QueryPlan();
+			plan.setAccessPath("bitmap");
+			plan.setRowIds(rowIds);
+			examined = 0;
+			for (int i = 0; i < pages.size(); ++i) {
+				if (!rowIds.and(pageRowIds.get(i)).isEmpty()) {
+					plan.getPageIdxs().add(i);
+					examined += pageRowIds.get(i).getCardinality();
+				}
+			}
+			plan.setPages((int) Math.ceil(plan.getPageIdxs().size() * read), pages.size());
+			plan.setCost((plan.getPageIdxs().size() * READ_COST + examined * TUPLE_COST) * read);
+			best = cheaper(best, plan);
+		}
+
+		HashSet<String> colNames = null;
+		if (strarrColNames != null) {
+			colNames = new HashSet<String>(Arrays.asList(strarrColNames));
+			for (SQLTerm sqlTerm : sqlTerms) {
+				colNames.add(sqlTerm._strColumnName);
+			}
+		}
+		Vector<QueryPlan> usable = new Vector<QueryPlan>();
+		for (Index idx : indices) {
+			boolean covering = colNames != null && idx.covers(colNames);
+			if (!covering && idx.getScore(sqlTerms, ops) == 0) {
+				continue;
+			}
+			QueryPlan plan = new QueryPlan();
+			plan.getIndices().add(idx);
+			idx.explain(sqlTerms, ops, plan);
+			int refs = Math.min(plan.getEstimatedReferences(), rows);
+			plan.setEstimatedReferences(refs);
+			if (covering) {
+				// scanning the entries of a covering index is cheaper than loading the pages
+				// even if it narrows nothing down
+				plan.setAccessPath("coveringIndex");
+				plan.setPages(0, pages.size());
+				plan.setCost(plan.getBuckets() * READ_COST + refs * TUPLE_COST);
+			} else {
+				plan.setAccessPath("index");
+				plan.setPages(pagesHolding(refs), pages.size());
+				plan.setCost((plan.getBuckets() + plan.getEstimatedPages()) * READ_COST + refs * TUPLE_COST);
+				usable.add(plan);
+			}
+			best = cheaper(best, plan);
+		}
+
+		// a tuple matching terms joined by AND is referenced by every usable index, the
+		// fractions of the table they select are taken as independent
+		if (usable.size() > 1 && conjunctive(ops)) {
+			QueryPlan plan = new QueryPlan();
+			plan.setAccessPath("indexIntersection");
+			StringBuilder sb = new StringBuilder();
+			int cells = 0, totalCells = 0, buckets = 0, intersected = 0;
+			double fraction = 1;
+			Vector<String> residual = null;
+			for (QueryPlan p : usable) {
+				sb.append(sb.length() > 0 ? " and " : "").append(p.getIndex());
+				cells += p.getCells();
+				totalCells += p.getTotalCells();
+				buckets += p.getBuckets();
+				intersected += p.getEstimatedReferences();
+				fraction *= rows == 0 ? 0 : p.getEstimatedReferences() / (double) rows;
+				plan.getIndices().addAll(p.getIndices());
+				if (residual == null) {
+					residual = new Vector<String>(p.getResidualPredicates());
+				} else {
+					residual.retainAll(p.getResidualPredicates());
+				}
+			}
+			int refs = (int) Math.ceil(fraction * rows);
+			plan.setIndex(sb.toString(), cells, totalCells, buckets, refs);
+			plan.setPages(pagesHolding(refs), pages.size());
+			plan.getResidualPredicates().addAll(residual);
+			plan.setCost((buckets + plan.getEstimatedPages()) * READ_COST + (intersected + refs) * TUPLE_COST);
+			best = cheaper(best, plan);
+		}
+
+		if (statistics != null) {
+			best.setEstimatedRows(Math.round(statistics.selectivity(sqlTerms, ops, rows) * rows));
+		}
+		return best;
+	}
+
+	/**
+	 * @return the plan costing less, the first one on a tie
+	 */
+	private static QueryPlan cheaper(QueryPlan a, QueryPlan b) {
+		return b.getCost() < a.getCost() ? b : a;
+	}
+
+	/**
+	 * @return the number of distinct pages the references are expected to fall in
+	 *         when spread evenly over the table
+	 */
+	private int pagesHolding(int refs) {
+		if (pages.isEmpty()) {
+			return 0;
+		}
+		return (int) Math.ceil(pages.size() * (1 - Math.pow(1 - 1.0 / pages.size(), refs)));
+	}
+
+	/**
+	 * @return the first page and the one after the last page that may hold the keys
+	 *         allowed by the terms on the clustering key, all pages unless the terms
+	 *         are joined by AND
+	 */
+	private int[] getKeyRange(SQLTerm[] sqlTerms, String[] ops) {
+		int range[] = { 0, pages.size() };
+		if (!conjunctive(ops)) {
+			return range;
+		}
+		for (SQLTerm sqlTerm : sqlTerms) {
+			if (!boundsKey(sqlTerm)) {
+				continue;
+			}
+			int page = getFirstPageFrom(getComparable(sqlTerm._objValue, clusteringKeyType));
+			switch (sqlTerm._strOperator) {
+				case "=":
+					range[0] = Math.max(range[0], page);
+					range[1] = Math.min(range[1], page + 1);
+					break;
+				case ">":
+				case ">=":
+					range[0] = Math.max(range[0], page);
+					break;
+				default: // < and <=
+					range[1] = Math.min(range[1], page + 1);
+					break;
+			}
+		}
+		range[1] = Math.max(range[0], range[1]);
+		return range;
+	}
+
+	/**
+	 * @return true if the term bounds the values of the clustering key
+	 */
+	private boolean boundsKey(SQLTerm sqlTerm) {
+		return sqlTerm._strColumnName.equals(clusteringKeyColumn) && !sqlTerm._strOperator.equals("!=")
+				&& sqlTerm._objValue != null && sqlTerm._objValue.getClass().getName().equals(clusteringKeyType);
+	}
+
+	/**
+	 * @return the first page whose max key isn't below the value, the number of
+	 *         pages if there is none
+	 */
+	private int getFirstPageFrom(Comparable value) {
+		int lo = 0, hi = pages.size() - 1, res = pages.size();
+		while (lo <= hi) {
+			int mid = lo + (hi - lo) / 2;
+			Comparable max = getComparable(maxKey.get(mid), clusteringKeyType);
+			if (value.compareTo(max) <= 0) {
+				res = mid;
+				hi = mid - 1;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return res;
+	}
+
+	private static boolean conjunctive(String[] ops) {
+		for (String op : ops) {
+			if (!op.equalsIgnoreCase("and")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * converts deletion criteria into equality terms joined by AND
+	 */
+	private SQLTerm[] toSQLTerms(Hashtable<String, Object> htblColNameValue) {
+		SQLTerm[] res = new SQLTerm[htblColNameValue.size()];
+		int i = 0;
+		for (Entry<String, Object> e : htblColNameValue.entrySet()) {
+			res[i] = new SQLTerm();
+			res[i]._strTableName = tableName;
+			res[i]._strColumnName = e.getKey();
+			res[i]._strOperator = "=";
+			res[i]._objValue = e.getValue();
+			i++;
+		}
+		return res;
+	}
+
 	private void deletePages(int stIdx, int count) throws IOException {
 		for (int i = 0; i < count; ++i) {
-			File f = new File(path + pages.get(stIdx));
-			f.delete();
+			BufferPool.delete(path + pages.get(stIdx));
 			maxKey.remove(stIdx);
+			pageRowIds.remove(stIdx);
+			zoneMaps.remove(stIdx);
+			bloomFilters.remove(stIdx);
 			pages.remove(stIdx);
 		}
 		save();
 	}
 
 	private void deletePage(String pageName) throws IOException {
-		File f = new File(path + pageName);
-		f.delete();
+		BufferPool.delete(path + pageName);
 		int pageIdx = pages.indexOf(pageName);
 		maxKey.remove(pageIdx);
+		pageRowIds.remove(pageIdx);
+		zoneMaps.remove(pageIdx);
+		bloomFilters.remove(pageIdx);
 		pages.remove(pageIdx);
 		save();
 	}
 
 	private void save() throws IOException {
-		File f = new File(path + tableName + ".class");
-		if (f.exists()) {
-			f.delete();
-		}
-		f.createNewFile();
-		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(path + tableName + ".class"));
-		oos.writeObject(this);
-		oos.close();
+		// builds whose process stopped never complete
+		indices.removeIf(idx -> idx instanceof IndexBuild && !((IndexBuild) idx).isRunning());
+		BufferPool.write(path + tableName + ".class", this);
 	}
 
 	private void createDirectories() {
@@ -644,16 +1698,14 @@ public class Table implements Serializable {
 	}
 
 	private Page getPage(int idx) throws IOException, ClassNotFoundException {
-		ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path + pages.get(idx)));
-		Page page = (Page) ois.readObject();
-		ois.close();
-		return page;
+		return getPage(pages.get(idx));
 	}
 
 	private Page getPage(String pageName) throws IOException, ClassNotFoundException {
-		ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path + pageName));
-		Page page = (Page) ois.readObject();
-		ois.close();
+		Events.PageRead event = new Events.PageRead();
+		event.begin();
+		Page page = (Page) BufferPool.read(path + pageName);
+		event.end(path + pageName, page.getSize());
 		return page;
 	}
 
@@ -686,10 +1738,7 @@ public class Table implements Serializable {
 				"########################### TABLE " + tableName + " ###########################\n");
 		for (String pageName : pages) {
 			try {
-				ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path + pageName));
-				Page page = (Page) ois.readObject();
-				sb.append(page.toString());
-				ois.close();
+				sb.append(getPage(pageName).toString());
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -698,7 +1747,12 @@ public class Table implements Serializable {
 	}
 
 	public void printIndex(int index) {
-		System.out.println(indices.get(index));
+		// bitmap indices are numbered after the other indices
+		if (index >= indices.size()) {
+			System.out.println(bitmapIndices.get(index - indices.size()));
+		} else {
+			System.out.println(indices.get(index));
+		}
 	}
 
 	public Hashtable<String, String> getHtblColNameMin() {
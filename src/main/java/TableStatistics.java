@@ -0,0 +1,365 @@
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Statistics of the columns of a table gathered by analyze and saved with the
+ * table: its rows and, for every column, the nulls, a HyperLogLog sketch of the
+ * distinct values, an equi-depth histogram and the most common values. Inserts,
+ * updates and deletes keep the counts and the sketches current without loading
+ * pages, while the histograms and most common values, kept as fractions of the
+ * rows, describe the table as it was analyzed
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class TableStatistics implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+	private static final int BUCKETS = 16, MOST_COMMON = 8, SAMPLE_SIZE = 30000;
+	private static final double DEFAULT_EQ = 0.005, DEFAULT_RANGE = 1.0 / 3; // for values the statistics can't place
+
+	/**
+	 * the statistics of a column
+	 */
+	static class Column implements Serializable {
+
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 1L;
+		private long nulls, distinctValues;
+		private HyperLogLog distinct = new HyperLogLog();
+		private Object bounds[] = new Object[0]; // of the histogram buckets, each holding as many values
+		private Object mostCommon[] = new Object[0];
+		private double frequencies[] = new double[0]; // of the most common values among the non null ones
+		private transient long seen;
+		private transient Vector<Object> sample = new Vector<Object>(); // reservoir of the values scanned
+
+		void add(Object value) {
+			if (value == null) {
+				nulls++;
+			} else {
+				distinct.add(value);
+			}
+		}
+
+		void remove(Object value) {
+			if (value == null) {
+				nulls = Math.max(nulls - 1, 0);
+			}
+		}
+
+		/**
+		 * adds a scanned value to the sketch and keeps a uniform sample of the values
+		 */
+		void scan(Object value, Random random) {
+			add(value);
+			if (value == null) {
+				return;
+			}
+			long i = seen++;
+			if (sample.size() < SAMPLE_SIZE) {
+				sample.add(value);
+			} else if ((i = (long) (random.nextDouble() * (i + 1))) < SAMPLE_SIZE) {
+				sample.set((int) i, value);
+			}
+		}
+
+		/**
+		 * computes the histogram and the most common values from the sample
+		 *
+		 * @param fraction the fraction of the rows scanned
+		 */
+		void finish(double fraction) {
+			Vector<Object> values = sample;
+			sample = null;
+			nulls = Math.round(nulls / fraction);
+			distinctValues = distinct.estimate();
+			if (values.isEmpty()) {
+				return;
+			}
+
+			HashMap<Object, Integer> counts = new HashMap<Object, Integer>();
+			for (Object value : values) {
+				counts.merge(value, 1, Integer::sum);
+			}
+
+			// only values more common than the average one are worth keeping
+			Vector<Entry<Object, Integer>> entries = new Vector<Entry<Object, Integer>>(counts.entrySet());
+			entries.sort((a, b) -> b.getValue() - a.getValue());
+			int n = 0;
+			while (n < Math.min(MOST_COMMON, entries.size()) && entries.get(n).getValue() > 1
+					&& entries.get(n).getValue() * counts.size() > values.size()) {
+				n++;
+			}
+			mostCommon = new Object[n];
+			frequencies = new double[n];
+			for (int i = 0; i < n; ++i) {
+				mostCommon[i] = entries.get(i).getKey();
+				frequencies[i] = entries.get(i).getValue() / (double) values.size();
+			}
+
+			Collections.sort((Vector) values);
+			bounds = new Object[Math.min(BUCKETS, values.size() - 1) + 1];
+			for (int i = 0; i < bounds.length; ++i) {
+				bounds[i] = values.get((int) ((long) i * (values.size() - 1) / Math.max(bounds.length - 1, 1)));
+			}
+
+			if (fraction < 1) {
+				// the values seen once in the sample stand for many unseen ones (Duj1)
+				long f1 = 0;
+				for (int count : counts.values()) {
+					f1 += count == 1 ? 1 : 0;
+				}
+				double n1 = seen, total = seen / fraction, once = f1 * n1 / values.size();
+				double estimate = n1 * distinctValues / (n1 - once + once * n1 / total);
+				distinctValues = Math.max(distinctValues, Math.min(Math.round(estimate), Math.round(total)));
+			}
+		}
+
+		/**
+		 * @return the distinct values analyzed or added since, whichever is more
+		 */
+		long getDistinct() {
+			return Math.max(distinctValues, distinct.estimate());
+		}
+
+		/**
+		 * @return the estimated fraction of the rows whose value satisfies the term
+		 */
+		double selectivity(String operator, Object value, long rows) {
+			double nonNull = rows == 0 ? 1 : 1 - Math.min(nulls, rows) / (double) rows;
+			if (value == null || (bounds.length > 0 && bounds[0].getClass() != value.getClass())) {
+				return operator.equals("=") ? DEFAULT_EQ : DEFAULT_RANGE;
+			}
+			double eq = nonNull * equal(value);
+			switch (operator) {
+				case "=":
+					return eq;
+				case "!=":
+					return Math.max(nonNull - eq, 0);
+				case "<":
+					return nonNull * below(value);
+				case "<=":
+					return Math.min(nonNull * below(value) + eq, nonNull);
+				case ">":
+					return Math.max(nonNull * (1 - below(value)) - eq, 0);
+				default: // >=
+					return nonNull * (1 - below(value));
+			}
+		}
+
+		/**
+		 * @return the fraction of the non null values equal to the value
+		 */
+		private double equal(Object value) {
+			double common = 0;
+			for (int i = 0; i < mostCommon.length; ++i) {
+				if (mostCommon[i].equals(value)) {
+					return frequencies[i];
+				}
+				common += frequencies[i];
+			}
+			if (bounds.length > 0 && (((Comparable) value).compareTo(bounds[0]) < 0
+					|| ((Comparable) value).compareTo(bounds[bounds.length - 1]) > 0)) {
+				return 0; // outside the values analyzed
+			}
+			// the rest is shared evenly by the other values
+			return (1 - common) / Math.max(getDistinct() - mostCommon.length, 1);
+		}
+
+		/**
+		 * @return the fraction of the non null values below the value, interpolated
+		 *         within its bucket for numbers and dates
+		 */
+		private double below(Object value) {
+			if (bounds.length < 2) {
+				return DEFAULT_RANGE;
+			}
+			Comparable v = (Comparable) value;
+			if (v.compareTo(bounds[0]) <= 0) {
+				return 0;
+			}
+			if (v.compareTo(bounds[bounds.length - 1]) > 0) {
+				return 1;
+			}
+			int i = 0;
+			while (v.compareTo(bounds[i + 1]) > 0) {
+				i++;
+			}
+			double lo = toDouble(bounds[i]), hi = toDouble(bounds[i + 1]), within = 0.5;
+			if (!Double.isNaN(lo) && hi > lo) {
+				within = (toDouble(value) - lo) / (hi - lo);
+			}
+			return (i + within) / (bounds.length - 1);
+		}
+
+		private static double toDouble(Object value) {
+			if (value instanceof Number) {
+				return ((Number) value).doubleValue();
+			}
+			if (value instanceof Date) {
+				return ((Date) value).getTime();
+			}
+			return Double.NaN;
+		}
+
+		public String toString() {
+			StringBuilder sb = new StringBuilder("nulls=" + nulls + " distinct=" + getDistinct() + " mostCommon=[");
+			for (int i = 0; i < mostCommon.length; ++i) {
+				sb.append(i > 0 ? ", " : "").append(mostCommon[i]).append(String.format(":%.3f", frequencies[i]));
+			}
+			return sb.append("] histogram=").append(Arrays.toString(bounds)).toString();
+		}
+	}
+
+	private long rows, analyzedRows, modifications;
+	private double fraction;
+	private Date analyzed;
+	private Hashtable<String, Column> columns = new Hashtable<String, Column>();
+	private transient Random random;
+
+	/**
+	 * starts analyzing a table, its tuples are passed to scan and finish is called
+	 * once they are all scanned
+	 */
+	TableStatistics(Set<String> colNames) {
+		for (String colName : colNames) {
+			columns.put(colName, new Column());
+		}
+		random = new Random();
+	}
+
+	void scan(Tuple t) {
+		for (Entry<String, Column> e : columns.entrySet()) {
+			e.getValue().scan(t.getValue(e.getKey()), random);
+		}
+	}
+
+	/**
+	 * @param rows     the rows of the table
+	 * @param fraction the fraction of them scanned
+	 */
+	void finish(long rows, double fraction) {
+		this.rows = analyzedRows = rows;
+		this.fraction = fraction;
+		analyzed = new Date();
+		for (Column column : columns.values()) {
+			column.finish(fraction > 0 ? fraction : 1);
+		}
+	}
+
+	void insert(Hashtable<String, Object> htblColNameValue) {
+		rows++;
+		modifications++;
+		for (Entry<String, Column> e : columns.entrySet()) {
+			e.getValue().add(htblColNameValue.get(e.getKey()));
+		}
+	}
+
+	void update(Hashtable<String, Object> oldValues, Hashtable<String, Object> newValues) {
+		modifications++;
+		for (Entry<String, Column> e : columns.entrySet()) {
+			e.getValue().remove(oldValues.get(e.getKey()));
+			e.getValue().add(newValues.get(e.getKey()));
+		}
+	}
+
+	void delete(int deletedRows) {
+		rows = Math.max(rows - deletedRows, 0);
+		modifications += deletedRows;
+	}
+
+	/**
+	 * combines the selectivities of the terms the same way checkTuple does, taking
+	 * the columns as independent
+	 *
+	 * @param rows the rows of the table
+	 * @return the estimated fraction of the rows matching the terms
+	 */
+	double selectivity(SQLTerm[] sqlTerms, String[] ops, long rows) {
+		double res = 1;
+		for (int i = 0; i < sqlTerms.length; ++i) {
+			Column column = columns.get(sqlTerms[i]._strColumnName);
+			double s = column == null ? DEFAULT_RANGE
+					: column.selectivity(sqlTerms[i]._strOperator, sqlTerms[i]._objValue, rows);
+			if (i == 0) {
+				res = s;
+			} else {
+				switch (ops[i - 1].toLowerCase()) {
+					case "and":
+						res *= s;
+						break;
+					case "or":
+						res = res + s - res * s;
+						break;
+					case "xor":
+						res = res + s - 2 * res * s;
+						break;
+				}
+			}
+		}
+		return res;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the inserts, updates and deletes since the table was analyzed, the
+	 *         histograms and most common values may be stale once they are many
+	 */
+	public long getModifications() {
+		return modifications;
+	}
+
+	public long getNulls(String colName) {
+		return columns.get(colName).nulls;
+	}
+
+	public long getDistinct(String colName) {
+		return columns.get(colName).getDistinct();
+	}
+
+	/**
+	 * @return the bounds of the equi-depth histogram of the column, each bucket
+	 *         holds about as many of its analyzed values
+	 */
+	public Object[] getHistogram(String colName) {
+		return columns.get(colName).bounds.clone();
+	}
+
+	/**
+	 * @return the most common values of the column, most common first
+	 */
+	public Object[] getMostCommonValues(String colName) {
+		return columns.get(colName).mostCommon.clone();
+	}
+
+	/**
+	 * @return the estimated fraction of the rows matching the term
+	 */
+	public double getSelectivity(SQLTerm sqlTerm) {
+		return selectivity(new SQLTerm[] { sqlTerm }, new String[0], rows);
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("rows=" + rows + " analyzed=" + analyzed + " of " + analyzedRows
+				+ " rows" + (fraction < 1 ? String.format(" sampling %.0f%%", fraction * 100) : "")
+				+ " modifications=" + modifications + "\n");
+		for (Entry<String, Column> e : columns.entrySet()) {
+			sb.append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Holds the files written by an operation until it commits. The writes are only
+ * visible to the thread running the transaction, on commit they are appended to
+ * the log and then handed to the buffer pool, on rollback they are dropped. The
+ * table locks taken by the transaction are released when it ends.
+ *
+ * A transaction begun while another one runs on the thread is nested in it: its
+ * writes are merged into the outer transaction on commit and dropped on rollback,
+ * so a failing operation leaves the outer transaction as it was. Locks and
+ * snapshots always belong to the outermost transaction
+ */
+public class Transaction {
+
+	private static final ThreadLocal<Transaction> current = new ThreadLocal<Transaction>();
+	private static final AtomicLong nextId = new AtomicLong(1);
+
+	private long id;
+	private WriteAheadLog log;
+	private Transaction parent; // the transaction this one is nested in, null for the outermost
+	private LinkedHashMap<String, byte[]> writes; // null contents for deleted files
+	private Vector<Lock> locks;
+	private long snapshot = -1; // the commit version reads see, -1 to see the latest
+	private SlowQueryLog.Stats stats; // what the operation in the transaction did, null if not gathered
+
+	private Transaction(WriteAheadLog log, Transaction parent) {
+		this.id = parent != null ? parent.id : nextId.getAndIncrement();
+		this.log = log;
+		this.parent = parent;
+		this.writes = new LinkedHashMap<String, byte[]>();
+		this.locks = new Vector<Lock>();
+	}
+
+	/**
+	 * starts a transaction on the current thread, nested in the running one if any
+	 *
+	 * @param log the log the transaction commits to
+	 * @return the started transaction
+	 */
+	public static Transaction begin(WriteAheadLog log) {
+		Transaction txn = new Transaction(log, current.get());
+		current.set(txn);
+		return txn;
+	}
+
+	/**
+	 * starts a read only transaction on the current thread which sees the files as
+	 * they were committed when it started, without waiting for writers. Nested in a
+	 * running transaction it sees what that transaction sees instead
+	 *
+	 * @param log the log the transaction commits to
+	 * @return the started transaction
+	 */
+	public static Transaction beginSnapshot(WriteAheadLog log) {
+		Transaction txn = begin(log);
+		if (txn.parent == null) {
+			txn.snapshot = BufferPool.openSnapshot();
+		}
+		return txn;
+	}
+
+	/**
+	 * starts a read only transaction on the current thread reading a snapshot
+	 * opened before, which is closed when the transaction ends
+	 *
+	 * @param log      the log the transaction commits to
+	 * @param snapshot the commit version returned by BufferPool.openSnapshot
+	 * @return the started transaction
+	 */
+	static Transaction beginSnapshot(WriteAheadLog log, long snapshot) {
+		Transaction txn = begin(log);
+		txn.snapshot = snapshot;
+		return txn;
+	}
+
+	/**
+	 * @return the transaction running on the current thread, null if there is none
+	 */
+	public static Transaction current() {
+		return current.get();
+	}
+
+	/**
+	 * runs the following reads of the current thread in the passed transaction, used
+	 * by threads doing work for another one
+	 *
+	 * @param txn the transaction, null for none
+	 * @return the transaction the thread was running before
+	 */
+	static Transaction setCurrent(Transaction txn) {
+		Transaction prev = current.get();
+		if (txn != null) {
+			current.set(txn);
+		} else {
+			current.remove();
+		}
+		return prev;
+	}
+
+	/**
+	 * @return true if the transaction is nested in another one
+	 */
+	public boolean isNested() {
+		return parent != null;
+	}
+
+	/**
+	 * makes the writes of the transaction durable and visible to everyone, the
+	 * writes of a nested transaction are handed to the outer one instead
+	 *
+	 * @throws IOException when writing the log fails, nothing is applied then
+	 */
+	public void commit() throws IOException {
+		if (parent != null) {
+			parent.writes.putAll(writes);
+			writes.clear();
+			current.set(parent);
+			return;
+		}
+
+		try {
+			if (!writes.isEmpty()) {
+				BufferPool.commit(log, id, writes);
+			}
+		} finally {
+			writes.clear();
+			releaseLocks();
+			closeSnapshot();
+			current.remove();
+		}
+	}
+
+	/**
+	 * drops the writes of the transaction if it wasn't committed
+	 */
+	public void end() {
+		writes.clear();
+		if (parent != null) {
+			if (current.get() == this) {
+				current.set(parent);
+			}
+			return;
+		}
+
+		releaseLocks();
+		closeSnapshot();
+		if (current.get() == this) {
+			current.remove();
+		}
+	}
+
+	long getSnapshot() {
+		return parent != null ? parent.getSnapshot() : snapshot;
+	}
+
+	private void closeSnapshot() {
+		if (snapshot >= 0) {
+			BufferPool.closeSnapshot(snapshot);
+			snapshot = -1;
+		}
+	}
+
+	void hold(Lock lock) {
+		if (parent != null) {
+			parent.hold(lock);
+		} else {
+			locks.add(lock);
+		}
+	}
+
+	private void releaseLocks() {
+		// in reverse order of acquisition
+		for (int i = locks.size() - 1; i >= 0; --i) {
+			locks.get(i).unlock();
+		}
+		locks.clear();
+	}
+
+	void write(String path, byte data[]) {
+		writes.put(path, data);
+	}
+
+	SlowQueryLog.Stats getStats() {
+		return stats;
+	}
+
+	/**
+	 * @param stats where the operation running in the transaction records what it
+	 *              does, null to gather nothing
+	 */
+	void setStats(SlowQueryLog.Stats stats) {
+		this.stats = stats;
+	}
+
+	boolean hasWritten(String path) {
+		return writes.containsKey(path) || parent != null && parent.hasWritten(path);
+	}
+
+	byte[] getWritten(String path) {
+		return writes.containsKey(path) || parent == null ? writes.get(path) : parent.getWritten(path);
+	}
+}
@@ -9,6 +9,7 @@ public class Tuple implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private Hashtable<String, Object> values;
 	private String clusteringKeyColumn;
+	private int rowId; // stable id of the tuple within its table, kept when the tuple moves between pages
 
 	/**
 	 * constructor of a tuple
@@ -57,6 +58,14 @@ public class Tuple implements Serializable {
 		return values.get(clusteringKeyColumn);
 	}
 
+	public int getRowId() {
+		return rowId;
+	}
+
+	public void setRowId(int rowId) {
+		this.rowId = rowId;
+	}
+
 	public Object getValue(String key) {
 		return values.get(key);
 	}
@@ -0,0 +1,366 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Vector;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of the after-images of the files written by each committed
+ * operation. A file whose last logged image is the one being replaced is logged
+ * as a delta against it instead, so a write changing a few bytes of a large table
+ * file logs about as many. Records are buffered in memory and written by
+ * whichever committer gets to flush first, so concurrent commits share a single
+ * write and fsync (group commit). Every record is prefixed by its length and
+ * checksum so a torn write at the end of the log can be detected.
+ *
+ * Only committed transactions reach the log and their images only reach the data
+ * files after that, so recovery is redo only: the committed transactions after
+ * the last checkpoint record are written again when the log is opened
+ */
+public class WriteAheadLog {
+
+	static final byte IMAGE = 1, DELETE = 2, COMMIT = 3, CHECKPOINT = 4, DELTA = 5;
+
+	private static Hashtable<String, WriteAheadLog> logs = new Hashtable<String, WriteAheadLog>();
+
+	private String path;
+	private FileChannel channel;
+	private boolean fsync; // force the log to disk on commit, otherwise it is left to the OS
+	private ByteArrayOutputStream buffer; // records appended but not written yet
+	private long appendedLsn, flushedLsn; // log sequence numbers only grow, even when the log is truncated
+	private long startLsn; // the log sequence number of the first byte in the log file
+	private long checkpointLsn; // where recovery starts according to the last checkpoint record
+	private final ReentrantLock flushLock = new ReentrantLock(); // not a monitor, flushes block on the disk
+	private Hashtable<String, Long> checksums = new Hashtable<String, Long>(); // of the last image logged of each file
+
+	private WriteAheadLog(String path, boolean fsync) throws IOException {
+		this.path = path;
+		this.fsync = fsync;
+		new File(path).getParentFile().mkdirs();
+		recover();
+		channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		appendedLsn = flushedLsn = channel.size();
+		channel.position(channel.size());
+		buffer = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * @param path  the path of the log file
+	 * @param fsync whether commits wait for the log to be forced to disk
+	 * @return the log of the file, shared by every DBApp using the same directory
+	 * @throws IOException when the log can't be opened
+	 */
+	public static synchronized WriteAheadLog open(String path, boolean fsync) throws IOException {
+		WriteAheadLog log = logs.get(path);
+		if (log == null || !new File(path).exists()) { // reopened if the log file was removed
+			if (log != null) {
+				log.channel.close();
+			}
+			log = new WriteAheadLog(path, fsync);
+			logs.put(path, log);
+			BufferPool.register(log);
+		}
+		log.fsync = fsync;
+		return log;
+	}
+
+	/**
+	 * appends the images and deletions of a transaction followed by its commit
+	 * record. The images of files whose last logged image is the one they replace
+	 * are logged as deltas when that is at most half their size
+	 *
+	 * @param txnId  the id of the transaction
+	 * @param writes the paths written by the transaction mapped to their new
+	 *               contents, null for deleted files
+	 * @param bases  the paths written mapped to the contents they replace, files
+	 *               left out are logged whole
+	 * @return the log sequence number the log has to be flushed to for the
+	 *         transaction to be durable
+	 */
+	public long append(long txnId, Map<String, byte[]> writes, Map<String, byte[]> bases) throws IOException {
+		// deltas are encoded before taking the log so committers encode concurrently
+		Hashtable<String, Long> baseChecksums = new Hashtable<String, Long>();
+		Hashtable<String, byte[]> deltas = new Hashtable<String, byte[]>();
+		for (Entry<String, byte[]> e : writes.entrySet()) {
+			byte base[] = bases.get(e.getKey());
+			Long logged = checksums.get(e.getKey());
+			if (e.getValue() == null || base == null || logged == null) {
+				continue;
+			}
+			long checksum = checksum(base);
+			if (logged == checksum) {
+				byte delta[] = Delta.encode(base, e.getValue());
+				if (delta.length <= e.getValue().length / 2) {
+					baseChecksums.put(e.getKey(), checksum);
+					deltas.put(e.getKey(), delta);
+				}
+			}
+		}
+
+		synchronized (this) {
+			for (Entry<String, byte[]> e : writes.entrySet()) {
+				String filePath = e.getKey();
+				if (e.getValue() == null) {
+					appendRecord(DELETE, txnId, filePath, null);
+					checksums.remove(filePath);
+					continue;
+				}
+				// a file logged by another commit since its base was read is logged whole
+				Long checksum = baseChecksums.get(filePath);
+				if (checksum != null && checksum.equals(checksums.get(filePath))) {
+					ByteArrayOutputStream bos = new ByteArrayOutputStream();
+					DataOutputStream dos = new DataOutputStream(bos);
+					dos.writeLong(checksum);
+					dos.write(deltas.get(filePath));
+					dos.close();
+					appendRecord(DELTA, txnId, filePath, bos.toByteArray());
+				} else {
+					appendRecord(IMAGE, txnId, filePath, e.getValue());
+				}
+				checksums.put(filePath, checksum(e.getValue()));
+			}
+			appendRecord(COMMIT, txnId, null, null);
+			return appendedLsn;
+		}
+	}
+
+	/**
+	 * makes the log durable up to the passed log sequence number. The first
+	 * committer to get here writes the records of everyone who appended meanwhile
+	 *
+	 * @param lsn the log sequence number to be flushed to
+	 */
+	public void flush(long lsn) throws IOException {
+		flushLock.lock();
+		try {
+			if (flushedLsn >= lsn) { // another committer flushed our records
+				return;
+			}
+
+			byte data[];
+			long end;
+			synchronized (this) {
+				data = buffer.toByteArray();
+				buffer.reset();
+				end = appendedLsn;
+			}
+
+			ByteBuffer bb = ByteBuffer.wrap(data);
+			while (bb.hasRemaining()) {
+				channel.write(bb);
+			}
+			if (fsync) {
+				channel.force(false);
+			}
+			flushedLsn = end;
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * appends a checkpoint record and forces it to disk, recovery starts replaying
+	 * from the passed log sequence number once the record is in the log
+	 *
+	 * @param redoLsn the log sequence number before which every committed image
+	 *                is already in the data files
+	 */
+	public void checkpoint(long redoLsn) throws IOException {
+		long lsn;
+		synchronized (this) {
+			if (redoLsn <= startLsn || redoLsn <= checkpointLsn) { // nothing new to skip on recovery
+				return;
+			}
+			checkpointLsn = redoLsn;
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(bos);
+			dos.writeLong(redoLsn - startLsn); // stored as an offset in the file
+			dos.close();
+			appendRecord(CHECKPOINT, 0, null, bos.toByteArray());
+			lsn = appendedLsn;
+		}
+		flush(lsn);
+		if (!fsync) { // a checkpoint record is always forced
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * @return the log sequence number of the end of the log
+	 */
+	public synchronized long getLsn() {
+		return appendedLsn;
+	}
+
+	/**
+	 * @return the number of bytes in the log
+	 */
+	public synchronized long size() {
+		return appendedLsn - startLsn;
+	}
+
+	/**
+	 * empties the log, only allowed once every image in it reached the data files
+	 */
+	public void truncate() throws IOException {
+		flushLock.lock();
+		try {
+			// records appended from now on wait in the buffer for a flush, which can't
+			// happen before the file is emptied
+			synchronized (this) {
+				buffer.reset();
+				startLsn = flushedLsn = appendedLsn;
+			}
+			channel.truncate(0);
+			channel.position(0);
+			if (fsync) {
+				channel.force(false);
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the length and checksum of the image, telling images apart
+	 */
+	private static long checksum(byte data[]) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (long) data.length << 32 | crc.getValue();
+	}
+
+	/**
+	 * writes the images of the transactions committed after the last checkpoint
+	 * record to the data files and empties the log. Records after a torn or
+	 * corrupted one are ignored, their transactions never reported a commit
+	 */
+	private void recover() throws IOException {
+		File file = new File(path);
+		if (!file.exists() || file.length() == 0) {
+			return;
+		}
+
+		byte log[] = Files.readAllBytes(file.toPath());
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(log));
+		Vector<Long> offsets = new Vector<Long>();
+		Vector<byte[]> records = new Vector<byte[]>();
+		long offset = 0, redoOffset = 0;
+		while (offset + 8 <= log.length) {
+			int length = dis.readInt();
+			int checksum = dis.readInt();
+			if (length <= 0 || length > log.length - offset - 8) {
+				break;
+			}
+			byte record[] = new byte[length];
+			dis.readFully(record);
+			CRC32 crc = new CRC32();
+			crc.update(record);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			if (record[0] == CHECKPOINT) {
+				DataInputStream cdis = new DataInputStream(new ByteArrayInputStream(record));
+				cdis.skipBytes(1 + 8 + 4); // type, transaction id and length
+				redoOffset = cdis.readLong();
+			}
+			offsets.add(offset);
+			records.add(record);
+			offset += 8 + length;
+		}
+
+		Hashtable<Long, LinkedHashMap<String, byte[]>> pending = new Hashtable<Long, LinkedHashMap<String, byte[]>>();
+		for (int i = 0; i < records.size(); ++i) {
+			if (offsets.get(i) < redoOffset) {
+				continue;
+			}
+			DataInputStream rdis = new DataInputStream(new ByteArrayInputStream(records.get(i)));
+			byte type = rdis.readByte();
+			long txnId = rdis.readLong();
+			if (type == IMAGE || type == DELETE || type == DELTA) {
+				pending.computeIfAbsent(txnId, k -> new LinkedHashMap<String, byte[]>()).put(rdis.readUTF(),
+						records.get(i));
+			} else if (type == COMMIT && pending.containsKey(txnId)) {
+				for (byte record[] : pending.remove(txnId).values()) {
+					redo(record);
+				}
+			}
+		}
+
+		// every image is in the data files now
+		FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		fc.truncate(0);
+		fc.force(false);
+		fc.close();
+	}
+
+	/**
+	 * writes the image, deletion or delta in the record to its file
+	 */
+	private static void redo(byte record[]) throws IOException {
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(record));
+		byte type = dis.readByte();
+		dis.readLong(); // transaction id
+		String filePath = dis.readUTF();
+		if (type == DELETE) {
+			BufferPool.redo(filePath, null);
+			return;
+		}
+
+		byte data[] = new byte[dis.readInt()];
+		dis.readFully(data);
+		if (type == DELTA) {
+			// a file whose image isn't the base holds a later one, written out before the
+			// checkpoint record, which the following records of the file apply to
+			File file = new File(filePath);
+			byte base[] = file.exists() ? Files.readAllBytes(file.toPath()) : null;
+			if (base == null || checksum(base) != new DataInputStream(new ByteArrayInputStream(data)).readLong()) {
+				return;
+			}
+			data = Delta.apply(base, Arrays.copyOfRange(data, 8, data.length));
+		}
+		BufferPool.redo(filePath, data);
+	}
+
+	private void appendRecord(byte type, long txnId, String filePath, byte data[]) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(body);
+		dos.writeByte(type);
+		dos.writeLong(txnId);
+		if (filePath != null) {
+			dos.writeUTF(filePath);
+		}
+		if (data != null) {
+			dos.writeInt(data.length);
+			dos.write(data);
+		}
+		dos.close();
+
+		byte record[] = body.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(record);
+
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(record.length);
+		out.writeInt((int) crc.getValue());
+		out.write(record);
+		appendedLsn += 8 + record.length;
+	}
+}
@@ -0,0 +1,117 @@
+import java.io.Serializable;
+import java.util.Hashtable;
+import java.util.Set;
+
+/**
+ * The min, max and number of nulls of every column in a page. Kept in the table
+ * so scans can skip pages that can't hold a tuple matching the terms without
+ * loading them
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class ZoneMap implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+	private Hashtable<String, Object> htblColNameMin, htblColNameMax;
+	private Hashtable<String, Integer> htblColNameNulls;
+
+	/**
+	 * computes the zone map of the page
+	 *
+	 * @param page     the page to summarize
+	 * @param colNames the columns of the table
+	 */
+	public ZoneMap(Page page, Set<String> colNames) {
+		htblColNameMin = new Hashtable<String, Object>();
+		htblColNameMax = new Hashtable<String, Object>();
+		htblColNameNulls = new Hashtable<String, Integer>();
+
+		for (String colName : colNames) {
+			int nulls = 0;
+			for (Tuple t : page.getTuples()) {
+				Comparable value = (Comparable) t.getValue(colName);
+				if (value == null) {
+					nulls++;
+					continue;
+				}
+				if (!htblColNameMin.containsKey(colName) || value.compareTo(htblColNameMin.get(colName)) < 0) {
+					htblColNameMin.put(colName, value);
+				}
+				if (!htblColNameMax.containsKey(colName) || value.compareTo(htblColNameMax.get(colName)) > 0) {
+					htblColNameMax.put(colName, value);
+				}
+			}
+			htblColNameNulls.put(colName, nulls);
+		}
+	}
+
+	/**
+	 * combines the terms the same way checkTuple does, a term that can't be
+	 * satisfied by any tuple makes an AND false while OR and XOR need one of their
+	 * sides to be satisfiable
+	 *
+	 * @param sqlTerms the terms of the select statement
+	 * @param ops      the operators between the terms
+	 * @return false only if no tuple in the page can match the terms
+	 */
+	public boolean mayMatch(SQLTerm[] sqlTerms, String[] ops) {
+		boolean flag = true;
+		for (int i = 0; i < sqlTerms.length; ++i) {
+			if (i == 0) {
+				flag = mayMatch(sqlTerms[i]);
+			} else if (ops[i - 1].equalsIgnoreCase("and")) {
+				flag &= mayMatch(sqlTerms[i]);
+			} else {
+				flag |= mayMatch(sqlTerms[i]);
+			}
+		}
+		return flag;
+	}
+
+	private boolean mayMatch(SQLTerm sqlTerm) {
+		String colName = sqlTerm._strColumnName;
+		Object value = sqlTerm._objValue;
+		if (!htblColNameNulls.containsKey(colName)) { // not a column of the table
+			return true;
+		}
+
+		Object min = htblColNameMin.get(colName), max = htblColNameMax.get(colName);
+		if (sqlTerm._strOperator.equals("!=")) { // null values are never equal to the value
+			return htblColNameNulls.get(colName) > 0 || min == null || !min.equals(value) || !max.equals(value);
+		}
+		if (min == null) { // all values are null
+			return false;
+		}
+		if (value == null || value.getClass() != min.getClass()) { // left for the tuple check to decide
+			return true;
+		}
+
+		Comparable cValue = (Comparable) value;
+		switch (sqlTerm._strOperator) {
+			case "=":
+				return cValue.compareTo(min) >= 0 && cValue.compareTo(max) <= 0;
+			case ">":
+				return cValue.compareTo(max) < 0;
+			case ">=":
+				return cValue.compareTo(max) <= 0;
+			case "<":
+				return cValue.compareTo(min) > 0;
+			case "<=":
+				return cValue.compareTo(min) >= 0;
+			default:
+				return true;
+		}
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (String colName : htblColNameNulls.keySet()) {
+			sb.append(colName).append(" [").append(htblColNameMin.get(colName)).append("-")
+					.append(htblColNameMax.get(colName)).append("] nulls ").append(htblColNameNulls.get(colName))
+					.append("\n");
+		}
+		return sb.toString();
+	}
+}
@@ -1,10 +1,29 @@
 import org.junit.jupiter.api.*;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.management.ObjectName;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class Milestone2Tests {
@@ -122,6 +141,1023 @@ public class Milestone2Tests {
         dbApp = null;
     }
 
+    @Test
+    public void testCreateHashIndex() throws Exception {
+        DBApp dbApp = new DBApp();
+        dbApp.init();
+        String table = "students";
+        String[] index = { "first_name" };
+        dbApp.createHashIndex(table, index);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "students";
+        arrSQLTerms[0]._strColumnName = "first_name";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = "pzSMNq";
+
+        Iterator resultSet = dbApp.selectFromTable(arrSQLTerms, new String[0]);
+        Assertions.assertTrue(resultSet.hasNext());
+        Assertions.assertEquals("pzSMNq", ((Tuple) resultSet.next()).getValue("first_name"));
+        dbApp = null;
+    }
+
+    @Test
+    public void testCoveringIndexCount() throws Exception {
+        DBApp dbApp = new DBApp();
+        dbApp.init();
+        String table = "students";
+        String[] index = { "last_name" };
+        String[] included = { "id", "gpa" };
+        dbApp.createIndex(table, index, included);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "students";
+        arrSQLTerms[0]._strColumnName = "last_name";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = "NfdxAL";
+
+        Assertions.assertEquals(1, dbApp.countFromTable(arrSQLTerms, new String[0]));
+        Assertions.assertTrue(dbApp.existsInTable(arrSQLTerms, new String[0]));
+
+        String[] columns = { "id", "gpa" };
+        Iterator resultSet = dbApp.selectFromTable(arrSQLTerms, new String[0], columns);
+        Tuple tuple = (Tuple) resultSet.next();
+        Assertions.assertEquals("82-8772", tuple.getValue("id"));
+        Assertions.assertNull(tuple.getValue("first_name"));
+        dbApp = null;
+    }
+
+    @Test
+    public void testCreateBitmapIndex() throws Exception {
+        DBApp dbApp = newPlannerDatabase("bitmap");
+        SQLTerm[][] queries = {
+                { term("bitmap", "parity", "=", 1) },
+                { term("bitmap", "parity", "=", 0), term("bitmap", "parity", ">", 0) },
+                { term("bitmap", "parity", ">=", 0), term("bitmap", "parity", "!=", 0) },
+                { term("bitmap", "parity", "<", 1), term("bitmap", "parity", "=", 0) } };
+        String[][] operators = { {}, { "OR" }, { "XOR" }, { "AND" } };
+        List<List<Integer>> scanned = new ArrayList<>();
+        for (int i = 0; i < queries.length; i++) {
+            scanned.add(ids(dbApp.selectFromTable(queries[i], operators[i])));
+        }
+
+        dbApp.createBitmapIndex("bitmap", new String[] { "parity" });
+        for (int i = 0; i < queries.length; i++) {
+            Assertions.assertEquals(scanned.get(i), ids(dbApp.selectFromTable(queries[i], operators[i])));
+            Map<String, Number> before = dbApp.getMetrics();
+            Assertions.assertEquals(scanned.get(i).size(), dbApp.countFromTable(queries[i], operators[i]));
+            Assertions.assertEquals(1, delta(before, dbApp.getMetrics(), "select.plan.bitmap"));
+        }
+        Assertions.assertEquals(50, scanned.get(0).size());
+        Assertions.assertEquals(100, scanned.get(1).size());
+        Assertions.assertEquals(50, scanned.get(2).size());
+
+        // rows inserted and deleted once the index exists are kept in it
+        insertPlannerRows(dbApp, "bitmap", 100, 150);
+        Hashtable<String, Object> htblColNameValue = new Hashtable<>();
+        htblColNameValue.put("parity", 1);
+        dbApp.deleteFromTable("bitmap", htblColNameValue);
+        List<Integer> even = new ArrayList<>();
+        for (int id = 0; id < 150; id += 2) {
+            even.add(id);
+        }
+        Assertions.assertEquals(even, ids(dbApp.selectFromTable(queries[3], operators[3])));
+        Assertions.assertEquals(List.of(), ids(dbApp.selectFromTable(queries[0], operators[0])));
+    }
+
+    @Test
+    public void testCreateBloomFilters() throws Exception {
+        DBApp dbApp = new DBApp();
+        dbApp.init();
+        String table = "students";
+        String[] columns = { "first_name" };
+        dbApp.createBloomFilters(table, columns);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "students";
+        arrSQLTerms[0]._strColumnName = "first_name";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = "pzSMNq";
+        Assertions.assertTrue(dbApp.existsInTable(arrSQLTerms, new String[0]));
+
+        arrSQLTerms[0]._objValue = "missing";
+        Assertions.assertFalse(dbApp.selectFromTable(arrSQLTerms, new String[0]).hasNext());
+        dbApp = null;
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        File dir = newDatabaseDir("checkpoint", "");
+        DBApp dbApp = newPlannerDatabase(dir, "checkpoint");
+        insertPlannerRows(dbApp, "checkpoint", 0, 100);
+        File log = new File(dir, "data/wal.log");
+        Assertions.assertTrue(log.length() > 0);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[] { term("checkpoint", "id", ">=", 0) };
+        BufferPool.checkpoint();
+        Assertions.assertEquals(0, log.length());
+        Assertions.assertTrue(new File(dir, "data/checkpoint/checkpoint.class").exists());
+        Assertions.assertEquals(100, dbApp.countFromTable(arrSQLTerms, new String[0]));
+    }
+
+    @Test
+    public void testLogDeltas() throws Exception {
+        File dir = newDatabaseDir("deltas", "MaximumRowsCountinPage = 200\n");
+        DBApp dbApp = newPlannerDatabase(dir, "deltas");
+        dbApp.createBloomFilters("deltas", new String[] { "score" });
+        insertPlannerRows(dbApp, "deltas", 0, 500);
+        dbApp.analyze("deltas");
+
+        // a row changes a few bytes of the table and page files, their images aren't logged whole
+        WriteAheadLog log = WriteAheadLog.open(dir.getPath() + "/data/wal.log", true);
+        long lsn = log.getLsn();
+        insertPlannerRows(dbApp, "deltas", 500, 600);
+        long table = BufferPool.readBytes(dir.getPath() + "/data/deltas/deltas.class").length;
+        Assertions.assertTrue((log.getLsn() - lsn) / 100 < table / 4, (log.getLsn() - lsn) / 100 + " " + table);
+        Assertions.assertEquals(600, dbApp.countFromTable(new SQLTerm[] { term("deltas", "id", ">=", 0) }, new String[0]));
+    }
+
+    @Test
+    public void testRecoveryOnInit() throws Exception {
+        File dir = newDatabaseDir("recovery", "");
+        String classPath = new File(DBApp.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                + File.pathSeparator
+                + new File(Milestone2Tests.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(), "-cp",
+                classPath, CrashingClient.class.getName(), dir.getPath()).inheritIO().start();
+        Assertions.assertEquals(0, process.waitFor());
+
+        // the committed images are only in the log
+        File log = new File(dir, "data/wal.log");
+        Assertions.assertTrue(log.length() > 0);
+        Assertions.assertEquals(0, new File(dir, "data/recovery").list().length);
+
+        // tears the commit record of the last transaction, which never got reported
+        try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        DBApp dbApp = new DBApp(dir.getPath());
+        dbApp.init();
+        Assertions.assertEquals(0, log.length());
+        Assertions.assertEquals(100, dbApp.countFromTable(new SQLTerm[] { term("recovery", "id", ">=", 0) }, new String[0]));
+        Tuple tuple = (Tuple) dbApp.selectFromTable(new SQLTerm[] { term("recovery", "id", "=", 3) }, new String[0]).next();
+        Assertions.assertEquals(5, tuple.getValue("score"));
+        Assertions.assertFalse(dbApp.existsInTable(new SQLTerm[] { term("recovery", "id", "=", 999) }, new String[0]));
+    }
+
+    /**
+     * commits to the database in the passed directory then halts like a crash, so
+     * nothing but the log reaches the disk
+     */
+    static class CrashingClient {
+
+        public static void main(String[] args) throws Exception {
+            DBApp dbApp = newPlannerDatabase(new File(args[0]), "recovery");
+            insertPlannerRows(dbApp, "recovery", 0, 100);
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("score", 5);
+            dbApp.updateTable("recovery", "3", row);
+            insertPlannerRows(dbApp, "recovery", 999, 1000);
+            Runtime.getRuntime().halt(0); // skips the checkpoint of the shutdown hook
+        }
+    }
+
+    @Test
+    public void testInitFailsWithoutLog() throws Exception {
+        File dir = newDatabaseDir("nolog", "");
+        new File(dir, "data/wal.log").mkdirs(); // can't be opened as a file
+        DBApp dbApp = new DBApp(dir.getPath());
+        Assertions.assertThrows(UncheckedIOException.class, () -> dbApp.init());
+    }
+
+    @Test
+    public void testConcurrentInsertions() throws Exception {
+        DBApp dbApp = new DBApp(newDatabaseDir("concurrent", "").getPath());
+        dbApp.init();
+
+        Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+        htblColNameType.put("id", "java.lang.Integer");
+        Hashtable<String, String> minValues = new Hashtable<>();
+        minValues.put("id", "0");
+        Hashtable<String, String> maxValues = new Hashtable<>();
+        maxValues.put("id", "1000");
+        dbApp.createTable("concurrent", "id", htblColNameType, minValues, maxValues);
+
+        Thread[] threads = new Thread[4];
+        Exception[] errors = new Exception[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = thread; j < 100; j += threads.length) {
+                        Hashtable<String, Object> row = new Hashtable<>();
+                        row.put("id", j);
+                        dbApp.insertIntoTable("concurrent", row);
+                    }
+                } catch (Exception e) {
+                    errors[thread] = e;
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            Assertions.assertNull(errors[i]);
+        }
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "concurrent";
+        arrSQLTerms[0]._strColumnName = "id";
+        arrSQLTerms[0]._strOperator = ">=";
+        arrSQLTerms[0]._objValue = 0;
+        Assertions.assertEquals(100, dbApp.countFromTable(arrSQLTerms, new String[0]));
+    }
+
+    @Test
+    public void testLocksPerDatabase() throws Exception {
+        DBApp dbApp = newPlannerDatabase("locked", "LockTimeout = 100\n");
+        DBApp other = newPlannerDatabase("locked", "LockTimeout = 100\n");
+        dbApp.beginTransaction();
+        try {
+            insertPlannerRows(dbApp, "locked", 0, 1);
+
+            // a table of the same name in another directory isn't locked
+            CompletableFuture.runAsync(() -> {
+                try {
+                    insertPlannerRows(other, "locked", 0, 1);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }).get();
+
+            // the locked table times out after the timeout of its database
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                    () -> CompletableFuture.runAsync(() -> {
+                        try {
+                            insertPlannerRows(dbApp, "locked", 1, 2);
+                        } catch (Exception ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }).get());
+            Assertions.assertTrue(e.getCause().getCause() instanceof DBAppException, e.toString());
+        } finally {
+            dbApp.commit();
+        }
+        Assertions.assertEquals(1, dbApp.countFromTable(new SQLTerm[] { term("locked", "id", ">=", 0) }, new String[0]));
+    }
+
+    @Test
+    public void testOnlineIndexCreation() throws Exception {
+        File dir = newDatabaseDir("online", "MaximumRowsCountinPage = 250\nMaximumKeysCountinIndexBucket = 50\n");
+        DBApp dbApp = new DBApp(dir.getPath());
+        dbApp.init();
+
+        Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+        htblColNameType.put("id", "java.lang.Integer");
+        htblColNameType.put("grade", "java.lang.Integer");
+        Hashtable<String, String> minValues = new Hashtable<>();
+        minValues.put("id", "0");
+        minValues.put("grade", "0");
+        Hashtable<String, String> maxValues = new Hashtable<>();
+        maxValues.put("id", "10000");
+        maxValues.put("grade", "100");
+        dbApp.createTable("online", "id", htblColNameType, minValues, maxValues);
+
+        dbApp.beginTransaction();
+        for (int i = 0; i < 1000; i += 2) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", i);
+            row.put("grade", i % 100);
+            dbApp.insertIntoTable("online", row);
+        }
+        dbApp.commit();
+
+        // rows inserted while the index is built must still reach it
+        Exception[] error = new Exception[1];
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 1; i < 1000; i += 2) {
+                    Hashtable<String, Object> row = new Hashtable<>();
+                    row.put("id", i);
+                    row.put("grade", i % 100);
+                    dbApp.insertIntoTable("online", row);
+                }
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        writer.start();
+        dbApp.createIndex("online", new String[] { "grade" });
+        writer.join();
+        Assertions.assertNull(error[0]);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "online";
+        arrSQLTerms[0]._strColumnName = "grade";
+        arrSQLTerms[0]._strOperator = "=";
+        for (int grade = 0; grade < 100; grade += 33) {
+            arrSQLTerms[0]._objValue = grade;
+            Assertions.assertEquals(10, dbApp.countFromTable(arrSQLTerms, new String[0]));
+        }
+    }
+
+    @Test
+    public void testAsyncOperations() throws Exception {
+        DBApp dbApp = new DBApp(newDatabaseDir("async", "").getPath());
+        dbApp.init();
+        AsyncDBApp asyncApp = new AsyncDBApp(dbApp);
+
+        Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+        htblColNameType.put("id", "java.lang.Integer");
+        htblColNameType.put("name", "java.lang.String");
+        Hashtable<String, String> minValues = new Hashtable<>();
+        minValues.put("id", "0");
+        minValues.put("name", "a");
+        Hashtable<String, String> maxValues = new Hashtable<>();
+        maxValues.put("id", "1000");
+        maxValues.put("name", "zzzzzz");
+        asyncApp.createTableAsync("async", "id", htblColNameType, minValues, maxValues);
+
+        // nothing is awaited, the operations on the table still run in order
+        for (int i = 0; i < 50; i++) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", i);
+            row.put("name", "before");
+            asyncApp.insertAsync("async", row);
+        }
+        Hashtable<String, Object> update = new Hashtable<>();
+        update.put("name", "after");
+        asyncApp.updateAsync("async", "7", update);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "async";
+        arrSQLTerms[0]._strColumnName = "name";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = "after";
+        Assertions.assertEquals(1, asyncApp.countAsync(arrSQLTerms, new String[0]).get());
+
+        // failures are reported through the future
+        Hashtable<String, Object> duplicate = new Hashtable<>();
+        duplicate.put("id", 7);
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> asyncApp.insertAsync("async", duplicate).get());
+        Assertions.assertTrue(e.getCause() instanceof DBAppException);
+        asyncApp.close();
+    }
+
+    @Test
+    public void testSnapshotIsolation() throws Exception {
+        DBApp dbApp = newPlannerDatabase("snapshot");
+        SQLTerm[] arrSQLTerms = new SQLTerm[] { term("snapshot", "id", "=", 3) };
+        String path = Files.createTempFile("snapshot", ".class").toString();
+        BufferPool.writeBytes(path, new byte[] { 1 });
+
+        // a select nested in an open snapshot reads the table as it was when it opened
+        Transaction reader = Transaction.beginSnapshot(null);
+        try {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    Hashtable<String, Object> row = new Hashtable<>();
+                    row.put("score", 5);
+                    dbApp.updateTable("snapshot", "3", row);
+                    BufferPool.writeBytes(path, new byte[] { 2 }); // written through outside a transaction
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }).get();
+
+            Tuple tuple = (Tuple) dbApp.selectFromTable(arrSQLTerms, new String[0]).next();
+            Assertions.assertEquals(score(3), tuple.getValue("score"));
+            Assertions.assertArrayEquals(new byte[] { 1 }, BufferPool.readBytes(path));
+        } finally {
+            reader.end();
+        }
+
+        Tuple tuple = (Tuple) dbApp.selectFromTable(arrSQLTerms, new String[0]).next();
+        Assertions.assertEquals(5, tuple.getValue("score"));
+        Assertions.assertArrayEquals(new byte[] { 2 }, BufferPool.readBytes(path));
+        BufferPool.delete(path);
+    }
+
+    @Test
+    public void testTransactionCommitAndRollback() throws Exception {
+        DBApp dbApp = new DBApp(newDatabaseDir("transactions", "").getPath());
+        dbApp.init();
+
+        Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+        htblColNameType.put("id", "java.lang.Integer");
+        Hashtable<String, String> minValues = new Hashtable<>();
+        minValues.put("id", "0");
+        Hashtable<String, String> maxValues = new Hashtable<>();
+        maxValues.put("id", "1000");
+        dbApp.createTable("transactions", "id", htblColNameType, minValues, maxValues);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "transactions";
+        arrSQLTerms[0]._strColumnName = "id";
+        arrSQLTerms[0]._strOperator = ">=";
+        arrSQLTerms[0]._objValue = 0;
+
+        dbApp.beginTransaction();
+        for (int i = 0; i < 10; i++) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", i);
+            dbApp.insertIntoTable("transactions", row);
+        }
+        Assertions.assertEquals(10, dbApp.countFromTable(arrSQLTerms, new String[0]));
+        dbApp.rollback();
+        Assertions.assertEquals(0, dbApp.countFromTable(arrSQLTerms, new String[0]));
+
+        dbApp.beginTransaction();
+        for (int i = 0; i < 10; i++) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", i);
+            dbApp.insertIntoTable("transactions", row);
+        }
+        dbApp.commit();
+        Assertions.assertEquals(10, dbApp.countFromTable(arrSQLTerms, new String[0]));
+    }
+
+    @Test
+    public void testParallelScan() throws Exception {
+        File dir = newDatabaseDir("parallel", "MaximumRowsCountinPage = 50\nScanParallelism = 4\n");
+        DBApp dbApp = new DBApp(dir.getPath());
+        dbApp.init();
+
+        Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+        htblColNameType.put("id", "java.lang.Integer");
+        htblColNameType.put("parity", "java.lang.Integer");
+        Hashtable<String, String> minValues = new Hashtable<>();
+        minValues.put("id", "0");
+        minValues.put("parity", "0");
+        Hashtable<String, String> maxValues = new Hashtable<>();
+        maxValues.put("id", "10000");
+        maxValues.put("parity", "1");
+        dbApp.createTable("parallel", "id", htblColNameType, minValues, maxValues);
+
+        // spans several pages so they are scanned concurrently
+        dbApp.beginTransaction();
+        for (int i = 0; i < 1000; i++) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", i);
+            row.put("parity", i % 2);
+            dbApp.insertIntoTable("parallel", row);
+        }
+        dbApp.commit();
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "parallel";
+        arrSQLTerms[0]._strColumnName = "parity";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = 1;
+
+        // rows come back in clustering key order
+        Iterator resultSet = dbApp.selectFromTable(arrSQLTerms, new String[0]);
+        int expected = 1;
+        while (resultSet.hasNext()) {
+            Assertions.assertEquals(expected, ((Tuple) resultSet.next()).getValue("id"));
+            expected += 2;
+        }
+        Assertions.assertEquals(1001, expected);
+
+        Hashtable<String, Object> odd = new Hashtable<>();
+        odd.put("parity", 1);
+        dbApp.deleteFromTable("parallel", odd);
+        Assertions.assertEquals(0, dbApp.countFromTable(arrSQLTerms, new String[0]));
+        arrSQLTerms[0]._objValue = 0;
+        Assertions.assertEquals(500, dbApp.countFromTable(arrSQLTerms, new String[0]));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        DBApp dbApp = newPlannerDatabase("metrics", "");
+        Map<String, Number> before = dbApp.getMetrics();
+        insertPlannerRows(dbApp, "metrics", 0, 100);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "metrics";
+        arrSQLTerms[0]._strColumnName = "parity";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = 1;
+        dbApp.selectFromTable(arrSQLTerms, new String[0]);
+
+        Map<String, Number> after = dbApp.getMetrics();
+        Assertions.assertEquals(100L, after.get("table.metrics.insert.count"));
+        Assertions.assertEquals(1L, after.get("table.metrics.select.count"));
+        Assertions.assertTrue(after.get("table.metrics.insert.p99Micros").doubleValue() > 0);
+        Assertions.assertEquals(1L, delta(before, after, "select.plan.scan"));
+        Assertions.assertEquals(100L, delta(before, after, "select.rowsExamined"));
+        Assertions.assertEquals(50L, delta(before, after, "select.rowsReturned"));
+        Assertions.assertTrue(delta(before, after, "page.writes") >= 100);
+        Assertions.assertTrue(delta(before, after, "bytes.serialized") > 0);
+        double hitRatio = after.get("bufferpool.hitRatio").doubleValue();
+        Assertions.assertTrue(hitRatio > 0 && hitRatio <= 1);
+
+        // the same values through JMX
+        Object count = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("DBApp:type=Metrics"), "table.metrics.insert.count");
+        Assertions.assertEquals(100L, count);
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        DBApp dbApp = newPlannerDatabase("flight", "MaximumRowsCountinPage = 200\n");
+        dbApp.beginTransaction();
+        insertPlannerRows(dbApp, "flight", 0, 300);
+        dbApp.commit();
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "flight";
+        arrSQLTerms[0]._strColumnName = "parity";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = 1;
+
+        Path file = Files.createTempFile("flight", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("dbapp.QueryExecuted");
+            recording.enable("dbapp.PageRead").withThreshold(Duration.ZERO);
+            recording.start();
+            dbApp.selectFromTable(arrSQLTerms, new String[0]);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        int queries = 0, pageReads = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (event.getEventType().getName().equals("dbapp.QueryExecuted")) {
+                queries++;
+                Assertions.assertEquals("flight", event.getString("table"));
+                Assertions.assertEquals("parity = 1", event.getString("query"));
+                Assertions.assertEquals("scan", event.getString("accessPath"));
+                Assertions.assertEquals(300, event.getLong("rowsExamined"));
+                Assertions.assertEquals(150, event.getLong("rowsReturned"));
+            } else if (event.getString("path").contains("flight_")) {
+                pageReads++;
+            }
+        }
+        Files.delete(file);
+        Assertions.assertEquals(1, queries);
+        Assertions.assertEquals(2, pageReads);
+    }
+
+    @Test
+    public void testSlowOperationLog() throws Exception {
+        // a database of its own logging every operation
+        File dir = newDatabaseDir("slow", "SlowOperationThreshold = 0\n");
+        DBApp dbApp = newPlannerDatabase(dir, "slow");
+        insertPlannerRows(dbApp, "slow", 0, 20);
+
+        // another database without the log leaves the log of this one enabled
+        newPlannerDatabase("quiet", "");
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[1];
+        arrSQLTerms[0] = new SQLTerm();
+        arrSQLTerms[0]._strTableName = "slow";
+        arrSQLTerms[0]._strColumnName = "parity";
+        arrSQLTerms[0]._strOperator = "=";
+        arrSQLTerms[0]._objValue = 1;
+        dbApp.selectFromTable(arrSQLTerms, new String[0]);
+
+        Hashtable<String, Object> row = new Hashtable<>();
+        row.put("parity", 0);
+        dbApp.updateTable("slow", "3", row);
+        row = new Hashtable<>();
+        row.put("id", 4);
+        dbApp.deleteFromTable("slow", row);
+
+        List<String> lines = Files.readAllLines(new File(dir, "data/slow.log").toPath());
+        Assertions.assertEquals(3, lines.size());
+        Assertions.assertTrue(lines.get(0).contains(" select slow "), lines.get(0));
+        Assertions.assertTrue(lines.get(0).contains("where parity = 1 | access=scan pages=4 buckets=0 examined=20 returned=10"),
+                lines.get(0));
+        Assertions.assertTrue(lines.get(1).contains(" update slow "), lines.get(1));
+        Assertions.assertTrue(lines.get(1).contains("access=clusteringKey pages=1 buckets=0 examined=1 returned=1"),
+                lines.get(1));
+        Assertions.assertTrue(lines.get(2).contains(" delete slow "), lines.get(2));
+        Assertions.assertTrue(lines.get(2).contains("where id = 4 | access=clusteringKey"), lines.get(2));
+    }
+
+    @Test
+    public void testZoneMaps() throws Exception {
+        DBApp dbApp = newPlannerDatabase("zones");
+        SQLTerm[] above990 = new SQLTerm[] { term("zones", "score", ">", 990) };
+        SQLTerm[] from990 = new SQLTerm[] { term("zones", "score", ">=", 990) };
+
+        // no page holds a score above the largest one, so none is read
+        Map<String, Number> before = dbApp.getMetrics();
+        Assertions.assertEquals(0, count(dbApp.selectFromTable(above990, new String[0])));
+        Assertions.assertEquals(0, delta(before, dbApp.getMetrics(), "page.reads"));
+
+        // an update widens the range of its page
+        Hashtable<String, Object> row = new Hashtable<>();
+        row.put("score", 995);
+        dbApp.updateTable("zones", "42", row);
+        before = dbApp.getMetrics();
+        Iterator resultSet = dbApp.selectFromTable(above990, new String[0]);
+        Assertions.assertEquals(42, ((Tuple) resultSet.next()).getValue("id"));
+        Assertions.assertFalse(resultSet.hasNext());
+        Assertions.assertEquals(1, delta(before, dbApp.getMetrics(), "page.reads"));
+
+        // and shrinks it back
+        row.put("score", score(42));
+        dbApp.updateTable("zones", "42", row);
+        before = dbApp.getMetrics();
+        Assertions.assertEquals(0, count(dbApp.selectFromTable(above990, new String[0])));
+        Assertions.assertEquals(0, delta(before, dbApp.getMetrics(), "page.reads"));
+
+        // a delete shrinks the range of its page, id 27 has the largest score
+        before = dbApp.getMetrics();
+        Assertions.assertEquals(1, count(dbApp.selectFromTable(from990, new String[0])));
+        Assertions.assertEquals(1, delta(before, dbApp.getMetrics(), "page.reads"));
+        row = new Hashtable<>();
+        row.put("id", 27);
+        dbApp.deleteFromTable("zones", row);
+        before = dbApp.getMetrics();
+        Assertions.assertEquals(0, count(dbApp.selectFromTable(from990, new String[0])));
+        Assertions.assertEquals(0, delta(before, dbApp.getMetrics(), "page.reads"));
+    }
+
+    @Test
+    public void testBulkIndexBuild() throws Exception {
+        DBApp dbApp = newPlannerDatabase("bulk");
+        dbApp.createIndex("bulk", new String[] { "score" }, new String[] { "rank" });
+
+        // a score range spans cells whose 10 references overflow their 5 key buckets
+        SQLTerm[] range = new SQLTerm[] { term("bulk", "score", ">=", 300), term("bulk", "score", "<", 400) };
+        QueryPlan plan = dbApp.explain(range, new String[] { "AND" });
+        Assertions.assertEquals("index", plan.getAccessPath(), plan.toString());
+        Assertions.assertTrue(plan.getBuckets() > plan.getCells(), plan.toString());
+
+        // the index built from the pages answers as a scan would
+        String[][] operators = { { "AND" }, { "OR" } };
+        for (String[] ops : operators) {
+            SQLTerm[] arrSQLTerms = ops[0].equals("AND") ? range
+                    : new SQLTerm[] { term("bulk", "score", "<", 100), term("bulk", "score", ">", 900) };
+            List<String> expected = new ArrayList<>(), rows = new ArrayList<>(), entries = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                boolean a = ops[0].equals("AND") ? score(i) >= 300 : score(i) < 100;
+                boolean b = ops[0].equals("AND") ? score(i) < 400 : score(i) > 900;
+                if (ops[0].equals("AND") ? a && b : a || b) {
+                    expected.add(score(i) + ":" + rank(i));
+                }
+            }
+            for (Iterator all = dbApp.selectFromTable(arrSQLTerms, ops); all.hasNext();) {
+                Tuple tuple = (Tuple) all.next();
+                rows.add(tuple.getValue("score") + ":" + tuple.getValue("rank"));
+            }
+            // the included column is read from the index entries alone
+            Map<String, Number> before = dbApp.getMetrics();
+            Iterator it = dbApp.selectFromTable(arrSQLTerms, ops, new String[] { "score", "rank" });
+            Assertions.assertEquals(1, delta(before, dbApp.getMetrics(), "select.plan.coveringIndex"));
+            while (it.hasNext()) {
+                Tuple tuple = (Tuple) it.next();
+                entries.add(tuple.getValue("score") + ":" + tuple.getValue("rank"));
+            }
+            expected.sort(null);
+            rows.sort(null);
+            entries.sort(null);
+            Assertions.assertEquals(expected, rows);
+            Assertions.assertEquals(expected, entries);
+        }
+    }
+
+    @Test
+    public void testExplain() throws Exception {
+        DBApp dbApp = newPlannerDatabase("explain");
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[] { term("explain", "score", "=", 370), term("explain", "parity", "=", 1) };
+        String[] strarrOperators = new String[] { "AND" };
+
+        QueryPlan plan = dbApp.explain(arrSQLTerms, strarrOperators);
+        Assertions.assertEquals("scan", plan.getAccessPath());
+        Assertions.assertNull(plan.getIndex());
+        Assertions.assertEquals(20, plan.getTotalPages());
+        Assertions.assertEquals(2, plan.getResidualPredicates().size());
+
+        dbApp.createIndex("explain", new String[] { "score" });
+        Map<String, Number> before = dbApp.getMetrics();
+        plan = dbApp.explain(arrSQLTerms, strarrOperators);
+        Map<String, Number> after = dbApp.getMetrics();
+        Assertions.assertEquals("index", plan.getAccessPath());
+        Assertions.assertTrue(plan.getIndex().startsWith("GridIndex "), plan.getIndex());
+        Assertions.assertTrue(plan.getIndex().endsWith(" on [score]"), plan.getIndex());
+        Assertions.assertEquals(1, plan.getCells());
+        Assertions.assertEquals(2, plan.getBuckets());
+        Assertions.assertTrue(plan.getEstimatedPages() > 0 && plan.getEstimatedPages() < 20);
+        Assertions.assertEquals("[parity = 1]", plan.getResidualPredicates().toString());
+        Assertions.assertTrue(plan.toString().startsWith("access path: index\n"), plan.toString());
+        // nothing is read to explain the select
+        Assertions.assertEquals(0, delta(before, after, "page.reads"));
+        Assertions.assertEquals(0, delta(before, after, "bucket.reads"));
+    }
+
+    @Test
+    public void testCostBasedAccessPaths() throws Exception {
+        DBApp dbApp = newPlannerDatabase("planner");
+        dbApp.createIndex("planner", new String[] { "score" });
+        dbApp.createIndex("planner", new String[] { "rank" });
+
+        // a range of the clustering key only reads the pages holding it
+        SQLTerm[] arrSQLTerms = new SQLTerm[] { term("planner", "id", ">=", 90), term("planner", "parity", "=", 1) };
+        QueryPlan plan = dbApp.explain(arrSQLTerms, new String[] { "AND" });
+        Assertions.assertEquals("clusteringKey", plan.getAccessPath());
+        Assertions.assertEquals(2, plan.getEstimatedPages());
+        Assertions.assertEquals(5, count(dbApp.selectFromTable(arrSQLTerms, new String[] { "AND" })));
+
+        // the references found in both indices are fewer than those of either
+        arrSQLTerms = new SQLTerm[] { term("planner", "score", "=", 370), term("planner", "rank", "=", 530) };
+        plan = dbApp.explain(arrSQLTerms, new String[] { "AND" });
+        Assertions.assertEquals("indexIntersection", plan.getAccessPath(), plan.toString());
+        Assertions.assertEquals(4, plan.getBuckets());
+        Assertions.assertEquals(1, count(dbApp.selectFromTable(arrSQLTerms, new String[] { "AND" })));
+
+        // a term the index doesn't narrow down lets tuples in any cell match an OR, XOR
+        // or !=
+        String[][] operators = { { "OR" }, { "XOR" } };
+        for (String[] ops : operators) {
+            arrSQLTerms = new SQLTerm[] { term("planner", "score", "=", 370), term("planner", "parity", "=", 1) };
+            Assertions.assertEquals("scan", dbApp.explain(arrSQLTerms, ops).getAccessPath());
+            int expected = 0;
+            for (int i = 0; i < 100; i++) {
+                boolean a = score(i) == 370, b = i % 2 == 1;
+                expected += (ops[0].equals("OR") ? a || b : a ^ b) ? 1 : 0;
+            }
+            Assertions.assertEquals(expected, count(dbApp.selectFromTable(arrSQLTerms, ops)));
+        }
+        arrSQLTerms = new SQLTerm[] { term("planner", "score", "!=", 370) };
+        Assertions.assertEquals("scan", dbApp.explain(arrSQLTerms, new String[0]).getAccessPath());
+        Assertions.assertEquals(99, count(dbApp.selectFromTable(arrSQLTerms, new String[0])));
+
+        // deletes are planned the same way
+        Hashtable<String, Object> criteria = new Hashtable<>();
+        criteria.put("score", 370);
+        dbApp.deleteFromTable("planner", criteria);
+        arrSQLTerms = new SQLTerm[] { term("planner", "score", "=", 370) };
+        Assertions.assertEquals(0, count(dbApp.selectFromTable(arrSQLTerms, new String[0])));
+        Assertions.assertEquals(99, dbApp.countFromTable(new SQLTerm[] { term("planner", "id", ">=", 0) }, new String[0]));
+    }
+
+    @Test
+    public void testAnalyze() throws Exception {
+        DBApp dbApp = newPlannerDatabase("analyze");
+        Assertions.assertNull(dbApp.getStatistics("analyze"));
+        Assertions.assertThrows(DBAppException.class, () -> dbApp.analyze("analyze", 0));
+
+        TableStatistics statistics = dbApp.analyze("analyze");
+        Assertions.assertEquals(100, statistics.getRows());
+        Assertions.assertEquals(0, statistics.getNulls("score"));
+        Assertions.assertEquals(2, statistics.getDistinct("parity"));
+        Assertions.assertTrue(Math.abs(statistics.getDistinct("score") - 100) <= 5);
+        Object[] histogram = statistics.getHistogram("score");
+        Assertions.assertEquals(0, histogram[0]);
+        Assertions.assertEquals(990, histogram[histogram.length - 1]);
+        Assertions.assertEquals(0.5, statistics.getSelectivity(term("analyze", "score", "<", 500)), 0.05);
+        // evenly spread values have none more common than the others
+        Assertions.assertEquals(0, statistics.getMostCommonValues("parity").length);
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[] { term("analyze", "score", "<", 500), term("analyze", "parity", "=", 1) };
+        long rows = dbApp.explain(arrSQLTerms, new String[] { "AND" }).getEstimatedRows();
+        Assertions.assertTrue(rows >= 20 && rows <= 30, "" + rows);
+
+        // inserts are counted without analyzing again
+        for (int i = 100; i < 110; i++) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", i);
+            row.put("parity", i % 2);
+            row.put("rank", 370);
+            dbApp.insertIntoTable("analyze", row);
+        }
+        statistics = dbApp.getStatistics("analyze");
+        Assertions.assertEquals(110, statistics.getRows());
+        Assertions.assertEquals(10, statistics.getModifications());
+        Assertions.assertEquals(10, statistics.getNulls("score"));
+
+        statistics = dbApp.analyze("analyze");
+        Assertions.assertEquals(0, statistics.getModifications());
+        Assertions.assertEquals(370, statistics.getMostCommonValues("rank")[0]);
+        Assertions.assertEquals(11 / 110.0, statistics.getSelectivity(term("analyze", "rank", "=", 370)), 0.01);
+
+        // a sample of the pages scales its counts up to the table
+        statistics = dbApp.analyze("analyze", 0.5);
+        Assertions.assertEquals(110, statistics.getRows());
+        Assertions.assertTrue(statistics.getDistinct("id") >= 55 && statistics.getDistinct("id") <= 165,
+                statistics.toString());
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        DBApp dbApp = new DBApp();
+        dbApp.init();
+
+        SQLTerm[] arrSQLTerms = new SQLTerm[] { term("students", "gpa", ">=", 0.0) };
+        Iterator all = dbApp.selectFromTable(arrSQLTerms, new String[0]);
+        String[] columns = { "first_name", "dob" };
+        Iterator projected = dbApp.selectFromTable(arrSQLTerms, new String[0], columns);
+
+        // the projection holds the values read from the pages for its columns only
+        int rows = 0;
+        while (all.hasNext()) {
+            Tuple tuple = (Tuple) all.next(), projection = (Tuple) projected.next();
+            Assertions.assertEquals(tuple.getValue("first_name"), projection.getValue("first_name"));
+            Assertions.assertEquals(tuple.getValue("dob"), projection.getValue("dob"));
+            Assertions.assertEquals(2, projection.getValues().size());
+            rows++;
+        }
+        Assertions.assertFalse(projected.hasNext());
+        Assertions.assertTrue(rows > 0);
+        dbApp = null;
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        DBApp dbApp = newPlannerDatabase("limit");
+        SQLTerm[] arrSQLTerms = new SQLTerm[] { term("limit", "id", ">=", 0) };
+        Assertions.assertThrows(DBAppException.class, () -> dbApp.selectFromTable(arrSQLTerms, new String[0], 0));
+
+        // pages are read in key order until enough tuples are found
+        Map<String, Number> before = dbApp.getMetrics();
+        Iterator resultSet = dbApp.selectFromTable(arrSQLTerms, new String[0], 7);
+        Map<String, Number> after = dbApp.getMetrics();
+        for (int i = 0; i < 7; i++) {
+            Assertions.assertEquals(i, ((Tuple) resultSet.next()).getValue("id"));
+        }
+        Assertions.assertFalse(resultSet.hasNext());
+        Assertions.assertEquals(2, delta(before, after, "page.reads"));
+
+        // or backwards from the last page
+        before = dbApp.getMetrics();
+        resultSet = dbApp.selectFromTable(arrSQLTerms, new String[0], null, "id", true, 3);
+        after = dbApp.getMetrics();
+        for (int i = 99; i > 96; i--) {
+            Assertions.assertEquals(i, ((Tuple) resultSet.next()).getValue("id"));
+        }
+        Assertions.assertFalse(resultSet.hasNext());
+        Assertions.assertEquals(1, delta(before, after, "page.reads"));
+
+        // the top tuples by another column are kept in a heap while reading them all
+        SQLTerm[] odd = new SQLTerm[] { term("limit", "parity", "=", 1) };
+        resultSet = dbApp.selectFromTable(odd, new String[0], new String[] { "rank" }, "score", true, 5);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i < 100; i += 2) {
+            ids.add(i);
+        }
+        ids.sort((a, b) -> score(b) - score(a));
+        for (int i = 0; i < 5; i++) {
+            Tuple tuple = (Tuple) resultSet.next();
+            Assertions.assertEquals(rank(ids.get(i)), tuple.getValue("rank"));
+            Assertions.assertNull(tuple.getValue("score"));
+        }
+        Assertions.assertFalse(resultSet.hasNext());
+
+        // ordering without a limit sorts every matching tuple
+        resultSet = dbApp.selectFromTable(odd, new String[0], null, "rank", false, Integer.MAX_VALUE);
+        int last = -1, rows = 0;
+        for (; resultSet.hasNext(); rows++) {
+            int rank = (Integer) ((Tuple) resultSet.next()).getValue("rank");
+            Assertions.assertTrue(rank > last);
+            last = rank;
+        }
+        Assertions.assertEquals(50, rows);
+    }
+
+    private static final List<File> databases = new ArrayList<>();
+
+    @AfterAll
+    public static void deleteDatabases() throws Exception {
+        BufferPool.checkpoint(); // nothing of them is left to write afterwards
+        for (File dir : databases) {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * creates a database of its own holding a table of 100 rows in 20 pages, whose
+     * score and rank columns are permutations of 0, 10, ..., 990
+     */
+    private static DBApp newPlannerDatabase(String tableName) throws Exception {
+        DBApp dbApp = newPlannerDatabase(tableName, "");
+        insertPlannerRows(dbApp, tableName, 0, 100);
+        return dbApp;
+    }
+
+    /**
+     * creates a database of its own with pages of 5 rows and buckets of 5 keys
+     * holding an empty table of id, parity, score and rank columns
+     *
+     * @param settings lines added to DBApp.config
+     */
+    private static DBApp newPlannerDatabase(String tableName, String settings) throws Exception {
+        return newPlannerDatabase(newDatabaseDir(tableName, settings), tableName);
+    }
+
+    private static DBApp newPlannerDatabase(File dir, String tableName) throws Exception {
+        DBApp dbApp = new DBApp(dir.getPath());
+        dbApp.init();
+
+        Hashtable<String, String> htblColNameType = new Hashtable<String, String>();
+        Hashtable<String, String> minValues = new Hashtable<>();
+        Hashtable<String, String> maxValues = new Hashtable<>();
+        for (String colName : new String[] { "id", "parity", "score", "rank" }) {
+            htblColNameType.put(colName, "java.lang.Integer");
+            minValues.put(colName, "0");
+            maxValues.put(colName, colName.equals("parity") ? "1" : "1000");
+        }
+        dbApp.createTable(tableName, "id", htblColNameType, minValues, maxValues);
+        return dbApp;
+    }
+
+    /**
+     * creates the directory of a database, deleted once the tests are done, with
+     * pages of 5 rows and buckets of 5 keys
+     *
+     * @param settings lines added to DBApp.config
+     */
+    private static File newDatabaseDir(String name, String settings) throws Exception {
+        File dir = Files.createTempDirectory(name).toFile();
+        databases.add(dir);
+        new File(dir, "data").mkdirs();
+        new File(dir, "metadata.csv").createNewFile();
+        Files.write(new File(dir, "DBApp.config").toPath(),
+                ("MaximumRowsCountinPage = 5\nMaximumKeysCountinIndexBucket = 5\n" + settings).getBytes());
+        return dir;
+    }
+
+    /**
+     * inserts the rows whose ids are from inclusive to to exclusive
+     */
+    private static void insertPlannerRows(DBApp dbApp, String tableName, int from, int to) throws Exception {
+        for (int i = from; i < to; i++) {
+            Hashtable<String, Object> row = new Hashtable<>();
+            row.put("id", i);
+            row.put("parity", i % 2);
+            row.put("score", score(i));
+            row.put("rank", rank(i));
+            dbApp.insertIntoTable(tableName, row);
+        }
+    }
+
+    private static int score(int id) {
+        return id * 37 % 100 * 10;
+    }
+
+    private static int rank(int id) {
+        return id * 53 % 100 * 10;
+    }
+
+    private static SQLTerm term(String tableName, String colName, String operator, Object value) {
+        SQLTerm sqlTerm = new SQLTerm();
+        sqlTerm._strTableName = tableName;
+        sqlTerm._strColumnName = colName;
+        sqlTerm._strOperator = operator;
+        sqlTerm._objValue = value;
+        return sqlTerm;
+    }
+
+    /**
+     * @return the sorted ids of the tuples of the result set
+     */
+    private static List<Integer> ids(Iterator resultSet) {
+        List<Integer> ids = new ArrayList<>();
+        while (resultSet.hasNext()) {
+            ids.add((Integer) ((Tuple) resultSet.next()).getValue("id"));
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private static int count(Iterator resultSet) {
+        int count = 0;
+        for (; resultSet.hasNext(); resultSet.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static long delta(Map<String, Number> before, Map<String, Number> after, String name) {
+        return after.getOrDefault(name, 0L).longValue() - before.getOrDefault(name, 0L).longValue();
+    }
+
     @Test
     public void testSelectEmptyStudents() throws Exception {
         // Should return an empty iterator with no errors thrown